@@ -0,0 +1,275 @@
+import java.lang.management.*;
+import java.util.*;
+
+/* Smoke timings for the hot paths of self-play: Board win/open-square checks, Strategy set
+ * operations, Player.computerChooseMove against stores of different sizes, and whole games.
+ *
+ * The numbers to quote come from the JMH suite in jmh/ (mvn package, then
+ * java -jar target/benchmarks.jar -prof gc), which forks, uses blackholes and measures
+ * allocation with the GC profiler. This is only a quick check that needs nothing but javac: its
+ * numbers are rough, as everything runs in one JVM, results are only folded into a volatile sink,
+ * and nothing else guards against the JIT optimizing a loop away. Each operation is warmed up,
+ * then timed over several measurement iterations, and reports time per operation and throughput
+ * along with the bytes allocated per operation and the allocation rate, read from the JVM's
+ * per-thread allocation counter.
+ *
+ * Build and run from the repository root:
+ *   javac -d out src/*.java bench/*.java
+ *   java -cp out SmokeTimer [name filter] [seconds per iteration]
+ *   java -cp out SmokeTimer --check-alloc
+ *
+ * --check-alloc instead plays many whole games of computer decisions on one reused board after
+ * warming up, and fails (exit status 1) if choosing the moves allocated anything.
+ */
+public class SmokeTimer {
+	private static final int WARMUP_ITERATIONS = 3;
+	private static final int MEASUREMENT_ITERATIONS = 5;
+	private static volatile long sink;
+	// ^ results are folded in here so the JIT cannot drop the benchmarked work
+
+	private static com.sun.management.ThreadMXBean threads =
+			(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+	private static String filter = "";
+	private static double secondsPerIteration = 1.0;
+
+	/* One benchmarked operation; returns something derived from its result. The iteration number
+	 * lets an operation vary its input, so the JIT cannot hoist a constant call out of the loop. */
+	interface Op {
+		long run(int iteration);
+	}
+
+	public static void main(String[] args) {
+		if (args.length > 0 && args[0].equals("--check-alloc")) {
+			boolean ok = checkDecisionsAllocateNothing(3, 3, 300) & checkDecisionsAllocateNothing(4, 4, 5000);
+			System.exit(ok ? 0 : 1);
+		}
+		if (args.length > 0)
+			filter = args[0];
+		if (args.length > 1)
+			secondsPerIteration = Double.parseDouble(args[1]);
+		System.out.println(String.format("%-44s %12s %14s %12s %14s", "Benchmark", "ns/op", "ops/s", "B/op", "alloc MB/s"));
+
+		boardBenchmarks();
+		strategyBenchmarks();
+		decisionBenchmarks();
+		gameBenchmarks();
+	}
+
+	private static void boardBenchmarks() {
+		final Board midGame = new Board();
+		midGame.play(5, Board.X);
+		midGame.play(1, Board.O);
+		midGame.play(9, Board.X);
+		midGame.play(3, Board.O);
+		final Board won = new Board();
+		won.play(1, Board.X);
+		won.play(4, Board.O);
+		won.play(2, Board.X);
+		won.play(5, Board.O);
+		won.play(3, Board.X);
+		final Board[] boards = {midGame, won};
+		bench("Board.gameWon", new Op() {
+			public long run(int iteration) {
+				return boards[iteration & 1].gameWon() ? 1 : 0;
+			}
+		});
+		bench("Board.allOpenSquares", new Op() {
+			public long run(int iteration) {
+				return boards[iteration & 1].allOpenSquares().size();
+			}
+		});
+		final Board walked = new Board(15, 5);
+		bench("Board.play+undo (15x15, 5 in a row)", new Op() {
+			public long run(int iteration) {
+				walked.play(1 + (iteration & 127), Board.X);
+				boolean won = walked.gameWon();
+				walked.undo();
+				return won ? 1 : 0;
+			}
+		});
+	}
+
+	private static void strategyBenchmarks() {
+		final Board board = new Board();
+		board.play(5, Board.X);
+		board.play(1, Board.O);
+		final Strategy diagonal = new Strategy(3, 5, 7);
+		final Strategy longer = new Strategy(7, 5, 9, 3);
+		final Strategy reordered = new Strategy(7, 3, 5);
+		final long[] played = new long[1];
+		Bits.set(played, 5);
+		// ^ the mask overload, as Player uses; the LinkedList one converts and allocates
+		bench("Strategy.isValid", new Op() {
+			public long run(int iteration) {
+				return diagonal.isValid(board, played) ? 1 : 0;
+			}
+		});
+		bench("Strategy.equals", new Op() {
+			public long run(int iteration) {
+				return diagonal.equals(reordered) ? 1 : 0;
+			}
+		});
+		bench("Strategy.isParedVersionOf", new Op() {
+			public long run(int iteration) {
+				return diagonal.isParedVersionOf(longer) ? 1 : 0;
+			}
+		});
+	}
+
+	/* computerChooseMove on a 4 x 4 board (so there are enough distinct strategies to fill the
+	 * larger stores) from a mid-game position. */
+	private static void decisionBenchmarks() {
+		int[] storeSizes = {10, 100, 1000, 5000};
+		for (int i = 0; i < storeSizes.length; i++) {
+			TicTacToe context = new TicTacToe("computer", "computer", 4, 4);
+			fillStore(context.winningStrats(), storeSizes[i], 16, 4, new Random(42));
+			final Player me = context.getPlayers().get(0);
+			Player them = context.getPlayers().get(1);
+			me.reset();
+			them.reset();
+			final Board board = new Board(4, 4);
+			them.takeTurn(board);
+			me.takeTurn(board);
+			them.takeTurn(board);
+			bench("Player.computerChooseMove (" + storeSizes[i] + " strats)", new Op() {
+				public long run(int iteration) {
+					me.computerInit();
+					return me.computerChooseMove(board);
+				}
+			});
+		}
+	}
+
+	private static void gameBenchmarks() {
+		final TicTacToe selfPlay = new TicTacToe("computer", "computer");
+		bench("TicTacToe.playGame (computer vs computer)", new Op() {
+			public long run(int iteration) {
+				selfPlay.playGame();
+				return selfPlay.winningStrats().size();
+			}
+		});
+		final TicTacToe perfect = new TicTacToe("perfect", "perfect");
+		bench("TicTacToe.playGame (perfect vs perfect)", new Op() {
+			public long run(int iteration) {
+				perfect.playGame();
+				return perfect.winningStrats().size();
+			}
+		});
+	}
+
+	/* Fills a computer vs. computer context's store with the given number of strategies (so the
+	 * frontier and rank scans have real work to do), then checks that its players' decisions
+	 * allocate nothing at all once warmed up. Returns whether they did not. */
+	private static boolean checkDecisionsAllocateNothing(int boardSize, int winLength, int strategies) {
+		TicTacToe context = new TicTacToe("computer", "computer", boardSize, winLength);
+		fillStore(context.winningStrats(), strategies, boardSize*boardSize, winLength, new Random(42));
+		Player x = context.getPlayers().get(0);
+		Player o = context.getPlayers().get(1);
+		Board board = new Board(boardSize, winLength);
+
+		for (int round = 0; round < 5; round++)
+			playDecisions(x, o, board, 20000);
+		// ^ warm up, so the JIT has compiled (and escape-analyzed) the decision path and is done recompiling it
+		long thread = Thread.currentThread().getId();
+		long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+		long moves = playDecisions(x, o, board, 20000);
+		long allocated = threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+
+		String name = boardSize + "x" + boardSize + ", " + winLength + " in a row, " + context.winningStrats().size() + " strategies";
+		if (allocated == 0) {
+			System.out.println("OK: " + moves + " decisions (" + name + ") allocated nothing");
+			return true;
+		}
+		System.out.println("FAIL: " + moves + " decisions (" + name + ") allocated " + allocated + " bytes ("
+				+ String.format("%.2f", (double) allocated/moves) + " per decision)");
+		return false;
+	}
+
+	/* Plays the given number of games between the two computer players on the given board (cleared
+	 * first each time), without learning from them, and returns the number of moves chosen. */
+	private static long playDecisions(Player x, Player o, Board board, int games) {
+		long moves = 0;
+		for (int g = 0; g < games; g++) {
+			while (board.undo() >= 0)
+				;
+			x.reset();
+			o.reset();
+			Player toMove = (g & 1) == 0 ? x : o;
+			while (!board.gameWon() && !board.gameDrawn()) {
+				board.play(toMove.chooseTurn(board), toMove == x ? Board.X : Board.O);
+				toMove = toMove == x ? o : x;
+				moves++;
+			}
+		}
+		return moves;
+	}
+
+	/* Stores the given number of distinct random winning strategies of winLength to winLength+2
+	 * squares (at most all of them) on a board of the given number of squares. */
+	private static void fillStore(StrategyStore store, int count, int squares, int winLength, Random random) {
+		while (store.size() < count) {
+			LinkedList<Integer> moves = new LinkedList<Integer>();
+			int length = Math.min(squares, winLength + random.nextInt(3));
+			while (moves.size() < length) {
+				int square = 1 + random.nextInt(squares);
+				if (!moves.contains(square))
+					moves.add(square);
+			}
+			Strategy s = new Strategy(moves, false);
+			s.addCounts(random.nextInt(10), random.nextInt(10));
+			if (!store.contains(s))
+				store.add(s);
+		}
+	}
+
+	private static void bench(String name, Op op) {
+		if (!name.contains(filter))
+			return;
+
+		long batch = calibrate(op);
+		for (int i = 0; i < WARMUP_ITERATIONS; i++)
+			measure(op, batch);
+
+		double nanos = 0, bytes = 0;
+		for (int i = 0; i < MEASUREMENT_ITERATIONS; i++) {
+			double[] result = measure(op, batch);
+			nanos += result[0];
+			bytes += result[1];
+		}
+		double nsPerOp = nanos / (batch * MEASUREMENT_ITERATIONS);
+		double bytesPerOp = bytes / (batch * MEASUREMENT_ITERATIONS);
+		System.out.println(String.format("%-44s %12.1f %14.0f %12.1f %14.1f", name, nsPerOp, 1e9/nsPerOp,
+				bytesPerOp, bytesPerOp / nsPerOp * 1e9 / (1024*1024)));
+	}
+
+	/* Finds how many operations fill roughly one measurement iteration. */
+	private static long calibrate(Op op) {
+		long batch = 1;
+		while (true) {
+			long start = System.nanoTime();
+			run(op, batch);
+			long elapsed = System.nanoTime() - start;
+			if (elapsed > 50000000L || batch >= (1L << 32))
+				return Math.max(1, Math.min(1L << 32, (long) (batch * (secondsPerIteration * 1e9 / Math.max(1, elapsed)))));
+			batch *= 2;
+		}
+	}
+
+	/* Returns the nanoseconds taken and the bytes allocated by batch operations. */
+	private static double[] measure(Op op, long batch) {
+		long thread = Thread.currentThread().getId();
+		long allocatedBefore = threads.getThreadAllocatedBytes(thread);
+		long start = System.nanoTime();
+		run(op, batch);
+		long elapsed = System.nanoTime() - start;
+		long allocated = threads.getThreadAllocatedBytes(thread) - allocatedBefore;
+		return new double[] {elapsed, allocated};
+	}
+
+	private static void run(Op op, long batch) {
+		long result = 0;
+		for (long i = 0; i < batch; i++)
+			result += op.run((int) i);
+		sink += result;
+	}
+}
@@ -0,0 +1,92 @@
+package benchmarks;
+
+import java.lang.invoke.*;
+import java.util.*;
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.*;
+
+/* Board's win checks, open-square listing, move/undo and threat queries, on 3 x 3 boards and on a
+ * 15 x 15 five-in-a-row board, where there are enough lines for per-line work to show. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class BoardBenchmarks {
+	private static final MethodHandle NEW_BOARD = Handles.constructor("Board");
+	private static final MethodHandle NEW_SIZED_BOARD = Handles.constructor("Board", int.class, int.class);
+	private static final MethodHandle PLAY = Handles.method("Board", "play", void.class, int.class, int.class);
+	private static final MethodHandle UNDO = Handles.method("Board", "undo", int.class);
+	private static final MethodHandle GAME_WON = Handles.method("Board", "gameWon", boolean.class);
+	private static final MethodHandle ALL_OPEN_SQUARES = Handles.method("Board", "allOpenSquares", LinkedList.class);
+	private static final MethodHandle WINNING_SQUARE = Handles.method("Board", "winningSquare", int.class, int.class);
+	private static final int X = Handles.intConstant("Board", "X");
+	private static final int O = Handles.intConstant("Board", "O");
+
+	private Object midGame;
+	private Object won;
+	private Object empty15;
+	private Object quiet15;
+	// ^ a dozen stones down and no side a move from winning
+	private Object threat15;
+	// ^ X has four in a row with an open end
+	private int next;
+
+	@Setup
+	public void setUp() throws Throwable {
+		midGame = (Object) NEW_BOARD.invokeExact();
+		play(midGame, X, 5, 9);
+		play(midGame, O, 1, 3);
+		won = (Object) NEW_BOARD.invokeExact();
+		play(won, X, 1, 2, 3);
+		play(won, O, 4, 5);
+		empty15 = (Object) NEW_SIZED_BOARD.invokeExact(15, 5);
+		quiet15 = (Object) NEW_SIZED_BOARD.invokeExact(15, 5);
+		play(quiet15, X, 97, 113, 99, 143, 35, 187);
+		play(quiet15, O, 98, 112, 128, 129, 20, 200);
+		threat15 = (Object) NEW_SIZED_BOARD.invokeExact(15, 5);
+		play(threat15, X, 106, 107, 108, 109);
+		play(threat15, O, 121, 122, 123);
+	}
+
+	private static void play(Object board, int side, int... squares) throws Throwable {
+		for (int square : squares)
+			PLAY.invokeExact(board, square, side);
+	}
+
+	@Benchmark
+	public boolean gameWonMidGame() throws Throwable {
+		return (boolean) GAME_WON.invokeExact(midGame);
+	}
+
+	@Benchmark
+	public boolean gameWonWon() throws Throwable {
+		return (boolean) GAME_WON.invokeExact(won);
+	}
+
+	@Benchmark
+	public LinkedList<?> allOpenSquares() throws Throwable {
+		return (LinkedList<?>) ALL_OPEN_SQUARES.invokeExact(midGame);
+	}
+
+	/* A move and its undo on the big board, with the win check between, over the first 128 squares. */
+	@Benchmark
+	public void playUndo15x15(Blackhole sink) throws Throwable {
+		int square = 1 + (next++ & 127);
+		PLAY.invokeExact(empty15, square, X);
+		sink.consume((boolean) GAME_WON.invokeExact(empty15));
+		sink.consume((int) UNDO.invokeExact(empty15));
+	}
+
+	@Benchmark
+	public int winningSquareNone15x15() throws Throwable {
+		return (int) WINNING_SQUARE.invokeExact(quiet15, X);
+	}
+
+	@Benchmark
+	public int winningSquare15x15() throws Throwable {
+		return (int) WINNING_SQUARE.invokeExact(threat15, X);
+	}
+}
@@ -0,0 +1,75 @@
+package benchmarks;
+
+import java.lang.invoke.*;
+import java.util.*;
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+
+/* Player.computerChooseMove on a 4 x 4 board (so there are enough distinct strategies to fill the
+ * larger stores) from a mid-game position, against stores of different sizes. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class DecisionBenchmarks {
+	private static final MethodHandle NEW_CONTEXT = Handles.constructor("TicTacToe", String.class, String.class, int.class, int.class);
+	private static final MethodHandle WINNING_STRATS = Handles.method("TicTacToe", "winningStrats", Handles.type("StrategyStore"));
+	private static final MethodHandle GET_PLAYERS = Handles.method("TicTacToe", "getPlayers", LinkedList.class);
+	private static final MethodHandle NEW_SIZED_BOARD = Handles.constructor("Board", int.class, int.class);
+	private static final MethodHandle RESET = Handles.method("Player", "reset", void.class);
+	private static final MethodHandle TAKE_TURN = MethodHandles.dropReturn(Handles.method("Player", "takeTurn", Handles.type("Board"), Handles.type("Board")));
+	private static final MethodHandle COMPUTER_INIT = Handles.method("Player", "computerInit", void.class);
+	private static final MethodHandle COMPUTER_CHOOSE_MOVE = Handles.method("Player", "computerChooseMove", int.class, Handles.type("Board"));
+	private static final MethodHandle STORE_SIZE = Handles.method("StrategyStore", "size", int.class);
+	private static final MethodHandle STORE_CONTAINS = Handles.method("StrategyStore", "contains", boolean.class, Handles.type("Strategy"));
+	private static final MethodHandle STORE_ADD = Handles.method("StrategyStore", "add", void.class, Handles.type("Strategy"));
+	private static final MethodHandle NEW_STRATEGY = Handles.constructor("Strategy", LinkedList.class, Boolean.class);
+	private static final MethodHandle ADD_COUNTS = Handles.method("Strategy", "addCounts", void.class, int.class, int.class);
+
+	@Param({"10", "100", "1000", "5000"})
+	public int strategies;
+
+	private Object me;
+	private Object board;
+
+	@Setup
+	public void setUp() throws Throwable {
+		Object context = (Object) NEW_CONTEXT.invokeExact("computer", "computer", 4, 4);
+		fillStore((Object) WINNING_STRATS.invokeExact(context), strategies, 16, 4, new Random(42));
+		LinkedList<?> players = (LinkedList<?>) GET_PLAYERS.invokeExact(context);
+		me = players.get(0);
+		Object them = players.get(1);
+		RESET.invokeExact(me);
+		RESET.invokeExact(them);
+		board = (Object) NEW_SIZED_BOARD.invokeExact(4, 4);
+		TAKE_TURN.invokeExact(them, board);
+		TAKE_TURN.invokeExact(me, board);
+		TAKE_TURN.invokeExact(them, board);
+	}
+
+	@Benchmark
+	public int computerChooseMove() throws Throwable {
+		COMPUTER_INIT.invokeExact(me);
+		return (int) COMPUTER_CHOOSE_MOVE.invokeExact(me, board);
+	}
+
+	/* Stores the given number of distinct random winning strategies of winLength to winLength+2
+	 * squares on a board of the given number of squares, as SmokeTimer does. */
+	private static void fillStore(Object store, int count, int squares, int winLength, Random random) throws Throwable {
+		while ((int) STORE_SIZE.invokeExact(store) < count) {
+			LinkedList<Integer> moves = new LinkedList<Integer>();
+			int length = Math.min(squares, winLength + random.nextInt(3));
+			while (moves.size() < length) {
+				int square = 1 + random.nextInt(squares);
+				if (!moves.contains(square))
+					moves.add(square);
+			}
+			Object s = (Object) NEW_STRATEGY.invokeExact(moves, Boolean.FALSE);
+			ADD_COUNTS.invokeExact(s, random.nextInt(10), random.nextInt(10));
+			if (!(boolean) STORE_CONTAINS.invokeExact(store, s))
+				STORE_ADD.invokeExact(store, s);
+		}
+	}
+}
@@ -0,0 +1,40 @@
+package benchmarks;
+
+import java.lang.invoke.*;
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+
+/* Whole games through TicTacToe.playGame, learning included: computer vs. computer (whose store
+ * grows as the benchmark runs, as it does in training) and perfect vs. perfect. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class GameBenchmarks {
+	private static final MethodHandle NEW_CONTEXT = Handles.constructor("TicTacToe", String.class, String.class);
+	private static final MethodHandle SET_SEED = Handles.method("TicTacToe", "setSeed", void.class, long.class);
+	private static final MethodHandle PLAY_GAME = Handles.method("TicTacToe", "playGame", Handles.type("Game"));
+
+	private Object selfPlay;
+	private Object perfect;
+
+	@Setup
+	public void setUp() throws Throwable {
+		selfPlay = (Object) NEW_CONTEXT.invokeExact("computer", "computer");
+		SET_SEED.invokeExact(selfPlay, 42L);
+		perfect = (Object) NEW_CONTEXT.invokeExact("perfect", "perfect");
+		SET_SEED.invokeExact(perfect, 42L);
+	}
+
+	@Benchmark
+	public Object playGameComputer() throws Throwable {
+		return (Object) PLAY_GAME.invokeExact(selfPlay);
+	}
+
+	@Benchmark
+	public Object playGamePerfect() throws Throwable {
+		return (Object) PLAY_GAME.invokeExact(perfect);
+	}
+}
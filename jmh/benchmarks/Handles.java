@@ -0,0 +1,66 @@
+package benchmarks;
+
+import java.lang.invoke.*;
+
+/* Method handles onto the game's classes. JMH will not generate code for a benchmark in the
+ * unnamed package, and code in a named package cannot name the unnamed package's classes, so
+ * the benchmarks hold game objects as Object and call them through these. Every handle has the
+ * game's classes in its type replaced by Object (other types, such as String or long[], stay as
+ * they are); kept in a static final field and called with invokeExact, the JIT inlines it like a
+ * direct call. */
+final class Handles {
+	private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+	private Handles() {
+	}
+
+	/* Returns the named class of the unnamed package. */
+	static Class<?> type(String name) {
+		try {
+			return Class.forName(name);
+		} catch (ClassNotFoundException ex) {
+			throw new IllegalStateException("The game classes are not on the class path", ex);
+		}
+	}
+
+	static MethodHandle constructor(String className, Class<?>... parameters) {
+		try {
+			MethodHandle handle = LOOKUP.findConstructor(type(className), MethodType.methodType(void.class, parameters));
+			return handle.asType(opaque(handle.type()));
+		} catch (ReflectiveOperationException ex) {
+			throw new IllegalStateException("No such constructor on " + className, ex);
+		}
+	}
+
+	/* An instance method; the handle takes the receiver as its first argument. */
+	static MethodHandle method(String className, String name, Class<?> returns, Class<?>... parameters) {
+		try {
+			MethodHandle handle = LOOKUP.findVirtual(type(className), name, MethodType.methodType(returns, parameters));
+			return handle.asType(opaque(handle.type()));
+		} catch (ReflectiveOperationException ex) {
+			throw new IllegalStateException("No such method " + className + "." + name, ex);
+		}
+	}
+
+	/* Replaces the unnamed package's classes in the given type with Object. */
+	private static MethodType opaque(MethodType type) {
+		MethodType result = type;
+		for (int i = 0; i < type.parameterCount(); i++) {
+			if (isGameClass(type.parameterType(i)))
+				result = result.changeParameterType(i, Object.class);
+		}
+		return isGameClass(type.returnType()) ? result.changeReturnType(Object.class) : result;
+	}
+
+	private static boolean isGameClass(Class<?> type) {
+		return !type.isPrimitive() && !type.isArray() && type.getPackageName().isEmpty();
+	}
+
+	static int intConstant(String className, String name) {
+		try {
+			return type(className).getField(name).getInt(null);
+		} catch (ReflectiveOperationException ex) {
+			throw new IllegalStateException("No such constant " + className + "." + name, ex);
+		}
+	}
+}
@@ -0,0 +1,54 @@
+package benchmarks;
+
+import java.lang.invoke.*;
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+
+/* Strategy's validity check against a board, equality and paring on 3 x 3 strategies. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class StrategyBenchmarks {
+	private static final MethodHandle NEW_BOARD = Handles.constructor("Board");
+	private static final MethodHandle NEW_STRATEGY = Handles.constructor("Strategy", int[].class);
+	private static final MethodHandle PLAY = Handles.method("Board", "play", void.class, int.class, int.class);
+	private static final MethodHandle IS_VALID = Handles.method("Strategy", "isValid", boolean.class, Handles.type("Board"), long[].class);
+	private static final MethodHandle EQUALS = Handles.method("Strategy", "equals", boolean.class, Handles.type("Strategy"));
+	private static final MethodHandle IS_PARED_VERSION_OF = Handles.method("Strategy", "isParedVersionOf", boolean.class, Handles.type("Strategy"));
+
+	private Object board;
+	private long[] played;
+	// ^ the squares the player has taken, as a mask: the overload Player uses
+	private Object diagonal;
+	private Object longer;
+	private Object reordered;
+
+	@Setup
+	public void setUp() throws Throwable {
+		board = (Object) NEW_BOARD.invokeExact();
+		PLAY.invokeExact(board, 5, Handles.intConstant("Board", "X"));
+		PLAY.invokeExact(board, 1, Handles.intConstant("Board", "O"));
+		played = new long[] {1L << (5-1)};
+		diagonal = (Object) NEW_STRATEGY.invokeExact(new int[] {3, 5, 7});
+		longer = (Object) NEW_STRATEGY.invokeExact(new int[] {7, 5, 9, 3});
+		reordered = (Object) NEW_STRATEGY.invokeExact(new int[] {7, 3, 5});
+	}
+
+	@Benchmark
+	public boolean isValid() throws Throwable {
+		return (boolean) IS_VALID.invokeExact(diagonal, board, played);
+	}
+
+	@Benchmark
+	public boolean equalsReordered() throws Throwable {
+		return (boolean) EQUALS.invokeExact(diagonal, reordered);
+	}
+
+	@Benchmark
+	public boolean isParedVersionOf() throws Throwable {
+		return (boolean) IS_PARED_VERSION_OF.invokeExact(diagonal, longer);
+	}
+}
@@ -0,0 +1,223 @@
+import java.util.concurrent.*;
+
+/* Plays perfectly by searching the whole game tree: negamax with alpha-beta pruning, trying the
+ * transposition table's best move first and then squares on the most lines. Results are kept in
+ * a TranspositionTable across moves and games, so after the first search most positions are
+ * answered from the table. Searches for the same configuration share one table (see shared()),
+ * so every new perfect player - e.g. one per server session - starts with everything the
+ * earlier ones worked out, and the table is allocated once rather than per player. The search
+ * walks the live board with play()/undo() and leaves it as it found it. Only for boards of at
+ * most MAX_SQUARES squares: there is no depth or time limit, and the full tree of anything
+ * bigger (5 x 5 already) takes far too long to search.
+ *
+ * A win scores WIN minus the number of moves on the board when it happens, so quicker wins (and
+ * slower losses) are preferred; since that number is fixed by the position, scores can be stored
+ * and reused regardless of where in the tree the position was reached. */
+public class AlphaBetaSearch {
+	private static final ConcurrentHashMap<Long, TranspositionTable> SHARED = new ConcurrentHashMap<Long, TranspositionTable>();
+	public static final int MAX_SQUARES = 16;
+	// ^ 4 x 4, the biggest board searched to the end in well under a second per game
+	private static final int WIN = 1000;
+
+	private final TranspositionTable table;
+	private final Symmetry symmetry;
+	private final int[] preferredOrder;
+	// ^ every square, the ones on the most lines first
+	private final int[][] moveBuffers;
+	// ^ one scratch move list per ply, so searching allocates nothing
+	private long nodes;
+
+	private long lastNodes;
+	private long lastNanos;
+	private long totalNodes;
+	private long totalNanos;
+	private long searches;
+
+	/* Searches with the table shared by every search for this configuration. */
+	public AlphaBetaSearch(int boardSize, int winLength) {
+		this(boardSize, winLength, shared(boardSize, winLength));
+	}
+
+	/* Searches with a table of its own, holding up to the given number of positions. */
+	public AlphaBetaSearch(int boardSize, int winLength, int tableCapacity) {
+		this(boardSize, winLength, new TranspositionTable(checkSize(boardSize), tableCapacity));
+	}
+
+	private AlphaBetaSearch(int boardSize, int winLength, TranspositionTable table) {
+		this.table = table;
+		symmetry = table.symmetry();
+		BoardGeometry geometry = BoardGeometry.of(boardSize, winLength);
+		int squares = geometry.squares();
+
+		preferredOrder = new int[squares];
+		for (int i = 0; i < squares; i++)
+			preferredOrder[i] = i+1;
+		// insertion sort by lines through the square, descending; stable, so ties stay in square order
+		for (int i = 1; i < squares; i++) {
+			int square = preferredOrder[i];
+			int j = i;
+			while (j > 0 && geometry.linesThrough(preferredOrder[j-1]).length < geometry.linesThrough(square).length) {
+				preferredOrder[j] = preferredOrder[j-1];
+				j--;
+			}
+			preferredOrder[j] = square;
+		}
+		moveBuffers = new int[squares+1][squares];
+	}
+
+	/* Returns the table shared by searches on boardSize x boardSize boards won with winLength in
+	 * a row, creating it the first time it is asked for. */
+	static TranspositionTable shared(int boardSize, int winLength) {
+		checkSize(boardSize);
+		Long key = ((long) boardSize << 32) | winLength;
+		TranspositionTable table = SHARED.get(key);
+		if (table == null)
+			table = SHARED.computeIfAbsent(key, k -> new TranspositionTable(boardSize, defaultCapacity(boardSize)));
+		return table;
+	}
+
+	private static int checkSize(int boardSize) {
+		if (boardSize*boardSize > MAX_SQUARES)
+			throw new IllegalArgumentException("Perfect players only support boards of at most " + MAX_SQUARES
+					+ " squares, not " + boardSize + " x " + boardSize);
+		return boardSize;
+	}
+
+	/* Sizes the table from the number of positions: about one slot per 256 of the 3^squares
+	 * (so 2^12 for 3 x 3 and 2^18 for 4 x 4, which holds every position a whole game searches). */
+	private static int defaultCapacity(int boardSize) {
+		double positions = Math.pow(3, boardSize*boardSize);
+		return (int) Math.max(1 << 12, Math.min(1 << 18, positions/256));
+	}
+
+	/* Returns a best square for the given side (X or O) to play on the given board. */
+	public int bestMove(Board onBoard, int side) {
+		long start = System.nanoTime();
+		nodes = 0;
+
+		int[] moves = moveBuffers[onBoard.movesPlayed()];
+		int count = orderMoves(onBoard, 0, moves);
+		int bestMove = -1;
+		int alpha = -WIN-1;
+		for (int i = 0; i < count; i++) {
+			int score = scoreMove(onBoard, moves[i], side, alpha, WIN+1);
+			if (score > alpha || bestMove < 0) {
+				alpha = score;
+				bestMove = moves[i];
+			}
+		}
+
+		lastNodes = nodes;
+		lastNanos = System.nanoTime() - start;
+		totalNodes += lastNodes;
+		totalNanos += lastNanos;
+		searches++;
+		return bestMove;
+	}
+
+	/* Returns the value, for the side to move, of the board's position. */
+	private int negamax(Board onBoard, int side, int alpha, int beta) {
+		nodes++;
+		if (onBoard.openCount() == 0)
+			return 0;
+
+		int originalAlpha = alpha;
+		// keyed by the mover's squares and then the opponent's, since either side may have started:
+		int mine = onBoard.packedMarks(side);
+		int theirs = onBoard.packedMarks(1-side);
+		int sym = symmetry.canonicalSymmetry(mine, theirs);
+		long key = Symmetry.packedKey(symmetry.mapMask(sym, mine), symmetry.mapMask(sym, theirs));
+		int entry = table.probe(key);
+		int tableMove = 0;
+		if (entry != TranspositionTable.NONE) {
+			int score = TranspositionTable.score(entry);
+			int flag = TranspositionTable.flag(entry);
+			if (flag == TranspositionTable.EXACT)
+				return score;
+			else if (flag == TranspositionTable.LOWER_BOUND)
+				alpha = Math.max(alpha, score);
+			else
+				beta = Math.min(beta, score);
+			if (alpha >= beta)
+				return score;
+			tableMove = symmetry.map(symmetry.inverse(sym), TranspositionTable.move(entry));
+		}
+
+		int[] moves = moveBuffers[onBoard.movesPlayed()];
+		int count = orderMoves(onBoard, tableMove, moves);
+		int best = -WIN-1;
+		int bestMove = 0;
+		for (int i = 0; i < count; i++) {
+			int score = scoreMove(onBoard, moves[i], side, alpha, beta);
+			if (score > best) {
+				best = score;
+				bestMove = moves[i];
+			}
+			alpha = Math.max(alpha, score);
+			if (alpha >= beta)
+				break;
+		}
+
+		int flag = best <= originalAlpha ? TranspositionTable.UPPER_BOUND
+				: best >= beta ? TranspositionTable.LOWER_BOUND : TranspositionTable.EXACT;
+		table.store(key, best, flag, symmetry.map(sym, bestMove));
+		return best;
+	}
+
+	/* Plays the given square, returns its value for the side playing it, and takes it back. */
+	private int scoreMove(Board onBoard, int square, int side, int alpha, int beta) {
+		onBoard.play(square, side);
+		int score;
+		if (onBoard.gameWon()) {
+			nodes++;
+			score = WIN - onBoard.movesPlayed();
+		}
+		else score = -negamax(onBoard, 1-side, -beta, -alpha);
+		onBoard.undo();
+		return score;
+	}
+
+	/* Fills moves with the open squares, the given first move (if any) first, and returns how many there are. */
+	private int orderMoves(Board onBoard, int first, int[] moves) {
+		int count = 0;
+		if (first > 0 && onBoard.isOpen(first))
+			moves[count++] = first;
+		for (int i = 0; i < preferredOrder.length; i++) {
+			int square = preferredOrder[i];
+			if (square != first && onBoard.isOpen(square))
+				moves[count++] = square;
+		}
+		return count;
+	}
+
+	public long lastNodes() {
+		return lastNodes;
+	}
+
+	public long lastNanos() {
+		return lastNanos;
+	}
+
+	public long searches() {
+		return searches;
+	}
+
+	/* Summarizes the last and average per-move node counts and latencies. */
+	public String report() {
+		if (searches == 0)
+			return "no searches yet";
+		return "last move: " + lastNodes + " nodes in " + lastNanos/1000 + "us; average over " + searches
+				+ " moves: " + totalNodes/searches + " nodes in " + totalNanos/searches/1000 + "us; table holds "
+				+ table.size() + " positions";
+	}
+
+	public static void main(String[] args) {
+		TicTacToe t = new TicTacToe("perfect", "perfect");
+		for (int i = 0; i < 100; i++)
+			t.playGame();
+		for (int i = 0; i < 2; i++) {
+			Player p = t.getPlayers().get(i);
+			System.out.println(p + ": " + p.getSearch().report());
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,128 @@
+import java.util.*;
+
+/* Helpers for square sets stored as bit masks over an array of longs, laid out like Board's
+ * masks (bit 0 of word 0 is square #1). Masks may have different lengths; missing words
+ * count as empty. None of these allocate except of(). */
+final class Bits {
+
+	private Bits() {
+	}
+
+	/* Returns a new mask holding the given squares. */
+	static long[] of(Collection<Integer> squares) {
+		int highest = 0;
+		for (Integer square : squares)
+			highest = Math.max(highest, square);
+		long[] mask = new long[(highest + 63) >>> 6];
+		for (Integer square : squares)
+			set(mask, square);
+		return mask;
+	}
+
+	static void set(long[] mask, int square) {
+		mask[Board.word(square)] |= Board.bit(square);
+	}
+
+	static void clearAll(long[] mask) {
+		Arrays.fill(mask, 0L);
+	}
+
+	static boolean contains(long[] mask, int square) {
+		int w = Board.word(square);
+		return w < mask.length && (mask[w] & Board.bit(square)) != 0;
+	}
+
+	/* Is every square of contained also in container? */
+	static boolean containsAll(long[] container, long[] contained) {
+		for (int w = 0; w < contained.length; w++) {
+			long outside = w < container.length ? contained[w] & ~container[w] : contained[w];
+			if (outside != 0)
+				return false;
+		}
+		return true;
+	}
+
+	/* Is every square of contained, apart from those in except, also in container? */
+	static boolean containsAllExcept(long[] container, long[] contained, long[] except) {
+		for (int w = 0; w < contained.length; w++) {
+			long needed = w < except.length ? contained[w] & ~except[w] : contained[w];
+			long outside = w < container.length ? needed & ~container[w] : needed;
+			if (outside != 0)
+				return false;
+		}
+		return true;
+	}
+
+	static boolean intersects(long[] a, long[] b) {
+		int common = Math.min(a.length, b.length);
+		for (int w = 0; w < common; w++) {
+			if ((a[w] & b[w]) != 0)
+				return true;
+		}
+		return false;
+	}
+
+	static boolean equal(long[] a, long[] b) {
+		int longest = Math.max(a.length, b.length);
+		for (int w = 0; w < longest; w++) {
+			if ((w < a.length ? a[w] : 0L) != (w < b.length ? b[w] : 0L))
+				return false;
+		}
+		return true;
+	}
+
+	/* Returns the lowest-numbered square in both masks, or -1 if they have none in common. */
+	static int firstCommon(long[] a, long[] b) {
+		int common = Math.min(a.length, b.length);
+		for (int w = 0; w < common; w++) {
+			long both = a[w] & b[w];
+			if (both != 0)
+				return (w << 6) + Long.numberOfTrailingZeros(both) + 1;
+		}
+		return -1;
+	}
+
+	/* Returns the n-th lowest square in the mask (n = 0 being the lowest), or -1 if it has no more than n. */
+	static int nth(long[] mask, int n) {
+		for (int w = 0; w < mask.length; w++) {
+			int inWord = Long.bitCount(mask[w]);
+			if (n < inWord) {
+				long remaining = mask[w];
+				for (int i = 0; i < n; i++)
+					remaining &= remaining-1;
+				return (w << 6) + Long.numberOfTrailingZeros(remaining) + 1;
+			}
+			n -= inWord;
+		}
+		return -1;
+	}
+
+	/* Returns the squares in the mask in ascending order. */
+	static int[] squares(long[] mask) {
+		int[] squares = new int[count(mask)];
+		int i = 0;
+		for (int w = 0; w < mask.length; w++) {
+			for (long remaining = mask[w]; remaining != 0; remaining &= remaining-1)
+				squares[i++] = (w << 6) + Long.numberOfTrailingZeros(remaining) + 1;
+		}
+		return squares;
+	}
+
+	static int count(long[] mask) {
+		int count = 0;
+		for (int w = 0; w < mask.length; w++)
+			count += Long.bitCount(mask[w]);
+		return count;
+	}
+
+	/* Hash that ignores trailing empty words, so it agrees with equal(). */
+	static int hash(long[] mask) {
+		int last = mask.length;
+		while (last > 0 && mask[last-1] == 0)
+			last--;
+		int hash = 1;
+		for (int w = 0; w < last; w++)
+			hash = 31*hash + Long.hashCode(mask[w]);
+		return hash;
+	}
+}
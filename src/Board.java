@@ -1,105 +1,337 @@
 import java.util.*;
 
 public class Board {
-	private String[][] board;
-	private Hashtable<Integer, Integer[]> namedSquares;
-	// ^ allows lookup from square-numberings (i.e. top left is square #1) to coordinates in the board double-array
-	private final Integer[][] ALL_LINES = {{1, 5, 9}, {3, 5, 7}, {1, 2, 3}, {4, 5, 6}, {7, 8, 9},
-			{1, 4, 7}, {2, 5, 8}, {3, 6, 9}};
-	// ^ all rows, cols, diags etc. in square-name format
-	private int SIZE = 3;
+	public static final int X = 0;
+	public static final int O = 1;
+
+	private final BoardGeometry geometry;
+	// ^ the shared line tables for this board's size and win length
+	private long[][] marks;
+	// ^ one bit mask per player (bit 0 of word 0 is square #1, the top left), indexed by X or O
+	private long[] open;
+	// ^ mask of the squares nobody has played yet
+	private int openCount;
+	private int[] movesPlayed;
+	private int moveCount;
+	// ^ stack of the squares played so far, so that undo() can take them back in order
+	private int wonAt;
+	private int winner;
+	// ^ the move count at which somebody first completed a line, and who, or -1 if nobody has
+	private int[] lineStates;
+	// ^ per line (indexed as in the geometry), how many of its squares each side holds, packed as
+	//   BoardGeometry.lineState() describes
+	private long threats;
+	// ^ how many lines each side could complete with its next move, X's in the low half and O's in
+	//   the high half: the sum of BoardGeometry.threatsByState() over the line states
 
 	public Board() {
-		board = new String[SIZE][SIZE];
-		Integer[] squareNames = new Integer[SIZE*SIZE];
-		for (int i = 0; i < SIZE*SIZE; i++)
-			squareNames[i] = i+1;
-		LinkedList<Integer[]> coordinatePairs = new LinkedList<Integer[]>();
-
-		// attach each "square name" (square 1, 2, etc.) to a coordinate pair
-		// that can be used to look the corresponding square up in the board double-array:
-		for (int j = 0; j < SIZE; j++) {
-			for (int k = 0; k < SIZE; k++) {
-				Integer[] toAdd = new Integer[2];
-				toAdd[0] = j;
-				toAdd[1] = k;
-				coordinatePairs.add(toAdd);
-			}
-		}
+		this(3, 3);
+	}
 
-		namedSquares = new Hashtable<Integer, Integer[]>(SIZE*SIZE);
-		for (int l = 0; l < SIZE*SIZE; l++)
-			namedSquares.put(squareNames[l], coordinatePairs.get(l));
+	/* Creates an empty size x size board that is won by getting winLength in a row. */
+	public Board(int size, int winLength) {
+		geometry = BoardGeometry.of(size, winLength);
+		marks = new long[2][geometry.words()];
+		open = new long[geometry.words()];
+		for (int square = 1; square <= geometry.squares(); square++)
+			open[word(square)] |= bit(square);
+		openCount = geometry.squares();
+		movesPlayed = new int[geometry.squares()];
+		moveCount = 0;
+		wonAt = -1;
+		winner = -1;
+		lineStates = new int[geometry.lineCount()];
+		threats = geometry.threatsByState()[0] * geometry.lineCount();
+		// ^ an empty line is only a threat when one square wins
 	}
 
 	/* Creates a board object where something has already happened on the board. */
 	public Board(String[][] board) {
-		this();
-		this.board = board;
+		this(board.length, board.length);
+		for (int row = 0; row < size(); row++) {
+			for (int col = 0; col < size(); col++) {
+				String currentSquare = board[row][col];
+				if (currentSquare != null)
+					play(row*size() + col + 1, sideOf(currentSquare));
+			}
+		}
 	}
 
+	/* Thin adapter over play() for the Player-based API. */
 	public void playerTakesTurn(Player p, int plays) {
-		Integer[] coordinates = namedSquares.get(plays);
-		board[coordinates[0]][coordinates[1]] = p.playerName();
+		play(plays, sideOf(p.playerName()));
 	}
 
-	public boolean gameWon() {
-		for (int i = 0; i < ALL_LINES.length; i++) {
-			if (allFilled(ALL_LINES[i]))
-				return true;
+	/* Marks the given open square for the given side (X or O). No copying is done, so
+	 * searches can walk positions with play()/undo() pairs on a single board.
+	 * Only the states of the lines through this square change. The threat counts move by
+	 * what those lines were and are now worth in the geometry's table, so no branch
+	 * depends on the position, and a line is won when this side threatened it before. */
+	public void play(int square, int side) {
+		int w = word(square);
+		long squareBit = bit(square);
+		marks[side][w] |= squareBit;
+		open[w] &= ~squareBit;
+		openCount--;
+		movesPlayed[moveCount++] = square;
+
+		int step = geometry.lineState(side, 1);
+		long[] worth = geometry.threatsByState();
+		int[] through = geometry.linesThrough(square);
+		long lost = 0, gained = 0;
+		for (int i = 0; i < through.length; i++) {
+			int line = through[i];
+			int state = lineStates[line];
+			lineStates[line] = state + step;
+			lost += worth[state];
+			gained += worth[state + step];
+		}
+		threats += gained - lost;
+		boolean completed = half(lost, side) != 0;
+		// ^ a line this side threatened had this square as its only open one
+
+		if (wonAt < 0 && completed) {
+			wonAt = moveCount;
+			winner = side;
+		}
+	}
+
+	/* Takes back the most recently played square, returning it (or -1 if the board is empty). */
+	public int undo() {
+		if (moveCount == 0)
+			return -1;
+		int square = movesPlayed[--moveCount];
+		int w = word(square);
+		long squareBit = bit(square);
+		int side = (marks[X][w] & squareBit) != 0 ? X : O;
+		marks[side][w] &= ~squareBit;
+		open[w] |= squareBit;
+		openCount++;
+
+		int step = geometry.lineState(side, 1);
+		long[] worth = geometry.threatsByState();
+		int[] through = geometry.linesThrough(square);
+		long lost = 0, gained = 0;
+		for (int i = 0; i < through.length; i++) {
+			int line = through[i];
+			int state = lineStates[line];
+			lineStates[line] = state - step;
+			lost += worth[state];
+			gained += worth[state - step];
 		}
-		return false;
+		threats += gained - lost;
+
+		if (moveCount < wonAt) {
+			wonAt = -1;
+			winner = -1;
+		}
+		return square;
+	}
+
+	public boolean gameWon() {
+		return wonAt >= 0;
+	}
+
+	/* Returns the side (X or O) that completed a line first, or -1 if nobody has. */
+	public int winner() {
+		return winner;
 	}
 
 	public boolean gameDrawn() {
-		return (!gameWon() && (allOpenSquares().size() == 0));
+		return (openCount == 0 && !gameWon());
+	}
+
+	/* The threat queries below read the line states, one int per line, without looking at any
+	 * squares until they find a line that qualifies. threats() and winningSquare() also have the
+	 * threat counts kept by play()/undo(): the first needs nothing else, and the second returns at
+	 * once when the count is 0, which is most of the time, and otherwise stops at the last threat. */
+
+	/* Returns how many lines the given side (X or O) could complete with its next move. */
+	public int threats(int side) {
+		return half(threats, side);
+	}
+
+	/* Returns an open square that wins for the given side on its next move (the lowest, if there
+	 * are several), or -1 if there is none. */
+	public int winningSquare(int side) {
+		int left = threats(side);
+		if (left == 0)
+			return -1;
+		int threatened = geometry.lineState(side, geometry.winLength()-1);
+		int best = -1;
+		for (int line = 0; line < lineStates.length; line++) {
+			if (lineStates[line] == threatened) {
+				int square = openSquareOf(geometry.line(line));
+				if (best < 0 || square < best)
+					best = square;
+				if (--left == 0)
+					break;
+			}
+		}
+		return best;
+	}
+
+	/* Returns the square the given side must take to stop the other side winning on its next
+	 * move, or -1 if the other side has no such move. If it has more than one, one block will not do. */
+	public int blockingSquare(int side) {
+		return winningSquare(1-side);
+	}
+
+	/* Returns the lowest open square that would give the given side two or more threats at once
+	 * (a fork, which the other side cannot block both of), or -1 if there is none. */
+	public int forkSquare(int side) {
+		if (geometry.winLength() < 2)
+			return -1;
+		int nearly = geometry.lineState(side, geometry.winLength()-2);
+		int candidates = 0;
+		for (int line = 0; line < lineStates.length && candidates < 2; line++) {
+			if (lineStates[line] == nearly)
+				candidates++;
+		}
+		if (candidates < 2)
+			return -1; // a fork needs two lines a square short of being threats
+
+		for (int w = 0; w < open.length; w++) {
+			for (long remaining = open[w]; remaining != 0; remaining &= remaining-1) {
+				int square = (w << 6) + Long.numberOfTrailingZeros(remaining) + 1;
+				int[] through = geometry.linesThrough(square);
+				int made = 0;
+				for (int i = 0; i < through.length; i++) {
+					if (lineStates[through[i]] == nearly)
+						made++;
+				}
+				if (made >= 2)
+					return square;
+			}
+		}
+		return -1;
 	}
 
 	public LinkedList<Integer> allOpenSquares() {
 		LinkedList<Integer> openSquares = new LinkedList<Integer>();
 
-		for (int i = 1; i <= namedSquares.size(); i++) {
-			Integer[] coordinates = namedSquares.get(i);
-			String currentSquare = board[coordinates[0]][coordinates[1]];
-			if (currentSquare == null)
-				openSquares.add(i);
+		for (int w = 0; w < open.length; w++) {
+			for (long remaining = open[w]; remaining != 0; remaining &= remaining-1)
+				openSquares.add((w << 6) + Long.numberOfTrailingZeros(remaining) + 1);
 		}
 
 		return openSquares;
 	}
 
-	/* Checks to see if every square (here, each int represents a square name)
-	 * in the given list is filled BY THE SAME PLAYER. */
-	private boolean allFilled(Integer[] line) {
-		String firstNameFound = "";
+	/* Returns the open squares as a mask, bit 0 of word 0 being square #1.
+	 * The array is the board's own, so do not modify it. */
+	public long[] openSquares() {
+		return open;
+	}
+
+	public int openCount() {
+		return openCount;
+	}
+
+	/* Returns the squares played by the given side (X or O) as a mask.
+	 * The array is the board's own, so do not modify it. */
+	public long[] marks(int side) {
+		return marks[side];
+	}
+
+	/* Returns the squares played by the given side as an int mask, for boards of at most 32 squares. */
+	public int packedMarks(int side) {
+		return (int) marks[side][0];
+	}
+
+	/* Returns the base-3 index of this position from the given side's point of view (see
+	 * BoardGeometry.ternaryIndex), for boards small enough to have one. */
+	public int ternaryIndex(int side) {
+		return geometry.ternaryIndex(packedMarks(side), packedMarks(1-side));
+	}
+
+	public boolean isOpen(int square) {
+		return (open[word(square)] & bit(square)) != 0;
+	}
+
+	/* Returns X or O for the side holding the given square, or -1 if it is open. */
+	public int sideAt(int square) {
+		int w = word(square);
+		long squareBit = bit(square);
+		if ((marks[X][w] & squareBit) != 0)
+			return X;
+		else if ((marks[O][w] & squareBit) != 0)
+			return O;
+		else return -1;
+	}
+
+	public int movesPlayed() {
+		return moveCount;
+	}
+
+	/* Returns the square played at the given ply (0 being the first move). */
+	public int moveAt(int ply) {
+		return movesPlayed[ply];
+	}
+
+	public BoardGeometry geometry() {
+		return geometry;
+	}
+
+	public int size() {
+		return geometry.size();
+	}
+
+	public int winLength() {
+		return geometry.winLength();
+	}
 
+	public int squares() {
+		return geometry.squares();
+	}
+
+	/* Returns the first open square of the given line, or -1 if it is full. */
+	private int openSquareOf(int[] line) {
 		for (int i = 0; i < line.length; i++) {
-			Integer[] currentCoordinates = namedSquares.get(line[i]);
-			String currentSquare = board[currentCoordinates[0]][currentCoordinates[1]];
-			if (currentSquare == null)
-				return false;
-			else if (firstNameFound.equals(""))
-				firstNameFound = currentSquare;
-			else if (!currentSquare.equals(firstNameFound))
-				return false;
+			if ((open[word(line[i])] & bit(line[i])) != 0)
+				return line[i];
 		}
+		return -1;
+	}
+
+	/* Returns the given side's half of a count packed as the threat counts are. */
+	private static int half(long packed, int side) {
+		return side == X ? (int) packed : (int) (packed >>> 32);
+	}
 
-		return true;
+	static int word(int square) {
+		return (square-1) >>> 6;
 	}
 
+	static long bit(int square) {
+		return 1L << (square-1);
+	}
+
+	public static int sideOf(String playerName) {
+		return playerName.equals("X") ? X : O;
+	}
+
+	private String nameAt(int row, int col) {
+		int side = sideAt(row*size() + col + 1);
+		if (side == X)
+			return "X";
+		else if (side == O)
+			return "O";
+		else return null;
+	}
 
 	public String toString() {
-		String s = "";
+		StringBuilder s = new StringBuilder(size()*(2*size()+1));
 
-		for (int i = 0; i < 3; i++)
-			s+=toString(board[0][i]);
-		s+="\n";
-		for (int j = 0; j < 3; j++)
-			s+=toString(board[1][j]);
-		s+="\n";
-		for (int k = 0; k < 3; k++)
-			s+=toString(board[2][k]);
-		return s;
+		for (int row = 0; row < size(); row++) {
+			if (row > 0)
+				s.append('\n');
+			for (int col = 0; col < size(); col++) {
+				int side = sideAt(row*size() + col + 1);
+				s.append(side == X ? 'X' : side == O ? 'O' : ' ').append(' ');
+			}
+		}
+		return s.toString();
 	}
 
 	public String toString(String s) {
@@ -108,7 +340,13 @@ public class Board {
 		else return s+" ";
 	}
 
+	/* Builds the old String double-array view of the board from the masks. */
 	public String[][] getBoard() {
+		String[][] board = new String[size()][size()];
+		for (int row = 0; row < size(); row++) {
+			for (int col = 0; col < size(); col++)
+				board[row][col] = nameAt(row, col);
+		}
 		return board;
 	}
 
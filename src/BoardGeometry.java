@@ -0,0 +1,169 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+/* The fixed layout of an N x N, k-in-a-row board: every line a player can win on, and which
+ * of those lines pass through each square. The tables are generated once per (size, winLength)
+ * configuration and shared by every Board using it, so they must never be modified. */
+public final class BoardGeometry {
+	public static final int MAX_TERNARY_SQUARES = 19;
+	// ^ 3^19 is the largest power of 3 that fits in an int
+	private static final ConcurrentHashMap<Long, BoardGeometry> CACHE = new ConcurrentHashMap<Long, BoardGeometry>();
+	private static final int[][] DIRECTIONS = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+	// ^ row/col steps for rows, cols, diags and anti-diags
+
+	private final int size;
+	private final int winLength;
+	private final int squares;
+	private final int words;
+	// ^ number of longs needed for one bit per square
+	private final int[][] lines;
+	// ^ every line in square-name format (top left is square #1)
+	private final int[][] linesThrough;
+	// ^ indices into lines, per square name (entry 0 is unused)
+	private final long[] threatsByState;
+	// ^ per line state (see lineState()), 1 if X could complete the line with its next move, plus
+	//   1 << 32 if O could
+	private final int[][] ternaryChunks;
+	// ^ for boards of at most MAX_TERNARY_SQUARES squares: ternaryChunks[byteIndex][byte] is the
+	//   base-3 value of those 8 squares' bits, so a mask converts with a few lookups
+
+	private BoardGeometry(int size, int winLength) {
+		this.size = size;
+		this.winLength = winLength;
+		squares = size*size;
+		words = (squares + 63) >>> 6;
+
+		LinkedList<int[]> found = new LinkedList<int[]>();
+		for (int row = 0; row < size; row++) {
+			for (int col = 0; col < size; col++) {
+				for (int d = 0; d < DIRECTIONS.length; d++) {
+					int endRow = row + DIRECTIONS[d][0]*(winLength-1);
+					int endCol = col + DIRECTIONS[d][1]*(winLength-1);
+					if (endRow < 0 || endRow >= size || endCol < 0 || endCol >= size)
+						continue;
+					// a single square is only a line once, not once per direction:
+					if (winLength == 1 && d > 0)
+						continue;
+					int[] line = new int[winLength];
+					for (int i = 0; i < winLength; i++)
+						line[i] = (row + DIRECTIONS[d][0]*i)*size + (col + DIRECTIONS[d][1]*i) + 1;
+					found.add(line);
+				}
+			}
+		}
+		lines = found.toArray(new int[found.size()][]);
+
+		int[] throughCount = new int[squares+1];
+		for (int i = 0; i < lines.length; i++)
+			for (int j = 0; j < winLength; j++)
+				throughCount[lines[i][j]]++;
+		linesThrough = new int[squares+1][];
+		for (int square = 1; square <= squares; square++)
+			linesThrough[square] = new int[throughCount[square]];
+		int[] filled = new int[squares+1];
+		for (int i = 0; i < lines.length; i++)
+			for (int j = 0; j < winLength; j++) {
+				int square = lines[i][j];
+				linesThrough[square][filled[square]++] = i;
+			}
+
+		threatsByState = new long[(winLength+1) * (winLength+1)];
+		threatsByState[lineState(Board.X, winLength-1)] += 1;
+		threatsByState[lineState(Board.O, winLength-1)] += 1L << 32;
+		// ^ with one square to win, the empty line is both sides' threat
+
+		if (squares <= MAX_TERNARY_SQUARES) {
+			int chunks = (squares + 7) >>> 3;
+			ternaryChunks = new int[chunks][256];
+			for (int chunk = 0; chunk < chunks; chunk++)
+				for (int bits = 1; bits < 256; bits++) {
+					int power = 1;
+					for (int b = 0; b < chunk*8; b++)
+						power *= 3;
+					for (int b = 0; b < 8 && chunk*8 + b < squares; b++, power *= 3) {
+						if ((bits & (1 << b)) != 0)
+							ternaryChunks[chunk][bits] += power;
+					}
+				}
+		}
+		else ternaryChunks = null;
+	}
+
+	/* Returns the shared geometry for the given configuration, building it the first time it is asked for. */
+	public static BoardGeometry of(int size, int winLength) {
+		if (size < 1 || winLength < 1 || winLength > size)
+			throw new IllegalArgumentException("Board size must be positive and the win length between 1 and the size, got "
+					+ size + " and " + winLength);
+		Long key = ((long) size << 32) | winLength;
+		BoardGeometry geometry = CACHE.get(key);
+		if (geometry == null)
+			geometry = CACHE.computeIfAbsent(key, k -> new BoardGeometry(size, winLength));
+		return geometry;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int winLength() {
+		return winLength;
+	}
+
+	public int squares() {
+		return squares;
+	}
+
+	public int words() {
+		return words;
+	}
+
+	public int lineCount() {
+		return lines.length;
+	}
+
+	/* Returns the state of a line holding count of the given side's squares and none of the other's.
+	 * A line's state is how many of its squares X holds plus winLength+1 times how many O holds,
+	 * so playing a square adds lineState(side, 1) to the state of every line through it. */
+	public int lineState(int side, int count) {
+		return side == Board.X ? count : count*(winLength+1);
+	}
+
+	/* Returns, indexed by line state, 1 if X could complete such a line with its next move, plus
+	 * 1 << 32 if O could, so that summed over lines the halves count each side's threats.
+	 * The array is shared, so do not modify it. */
+	public long[] threatsByState() {
+		return threatsByState;
+	}
+
+	/* Returns the squares of the given line. The array is shared, so do not modify it. */
+	public int[] line(int index) {
+		return lines[index];
+	}
+
+	public boolean hasTernaryIndex() {
+		return ternaryChunks != null;
+	}
+
+	/* Returns the number of distinct ternary indices, 3 to the number of squares. */
+	public int ternaryIndexCount() {
+		int count = 1;
+		for (int i = 0; i < squares; i++)
+			count *= 3;
+		return count;
+	}
+
+	/* Encodes a position in base 3, square #1 being the lowest digit: 0 for an open square, 1 for one
+	 * of the first side's and 2 for one of the second's. Callers pass the side to move first, so
+	 * the index also says whose turn it is. Requires hasTernaryIndex(). */
+	public int ternaryIndex(int firstMask, int secondMask) {
+		int index = 0;
+		for (int chunk = 0; firstMask != 0 || secondMask != 0; chunk++, firstMask >>>= 8, secondMask >>>= 8)
+			index += ternaryChunks[chunk][firstMask & 0xFF] + 2*ternaryChunks[chunk][secondMask & 0xFF];
+		return index;
+	}
+
+	/* Returns the indices of the lines passing through the given square. The array is shared, so do not modify it. */
+	public int[] linesThrough(int square) {
+		return linesThrough[square];
+	}
+}
\ No newline at end of file
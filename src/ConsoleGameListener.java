@@ -0,0 +1,11 @@
+/* Prints each turn and the resulting board to the console, as games always used to. */
+public class ConsoleGameListener implements GameListener {
+
+	public void turnStarted(Player whoseTurn, Board board) {
+		System.out.println(whoseTurn.toString() + " plays:");
+	}
+
+	public void movePlayed(Player whoseTurn, int square, Board board) {
+		System.out.println(board.toString());
+	}
+}
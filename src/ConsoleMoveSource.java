@@ -0,0 +1,28 @@
+import java.util.*;
+
+/* Reads human moves from standard input, as games always used to. Bad input is reported and
+ * asked for again in a loop. There is only one console, so there is only one instance. */
+public final class ConsoleMoveSource implements MoveSource {
+	public static final ConsoleMoveSource INSTANCE = new ConsoleMoveSource();
+
+	private final Scanner getInput = new Scanner(System.in);
+
+	private ConsoleMoveSource() {
+	}
+
+	public synchronized int chooseMove(Player p, Board onBoard) {
+		while (true) {
+			System.out.print("What square would you like to play?  Choose one of: " + onBoard.allOpenSquares());
+			if (!getInput.hasNext())
+				throw new NoSuchElementException("Standard input closed before " + p + " chose a move");
+			try {
+				int toPlay = Integer.parseInt(getInput.next());
+				if (toPlay >= 1 && toPlay <= onBoard.squares() && onBoard.isOpen(toPlay))
+					return toPlay;
+				System.out.println("ERROR: Please choose an open square.");
+			} catch (NumberFormatException ex) {
+				System.out.println("ERROR: Please enter an integer contained in the open squares.");
+			}
+		}
+	}
+}
@@ -0,0 +1,171 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+/* Runs many independent computer vs. computer trials at once to see how often, and how quickly,
+ * the learning reaches a "standoff": both sides playing well enough that every game is drawn.
+ * Each trial is its own TicTacToe learning from nothing, so trials share no state and run as
+ * separate tasks on a ForkJoinPool. A trial counts as converged once it draws drawStreak games
+ * in a row and stops there; otherwise it stops after maxRounds games.
+ *
+ * Every trial draws from its own random source, split from one master seed in trial order, so a
+ * run with the same seed reports the same results whatever the number of threads.
+ *
+ * This replaces running the README's 40 trials of 500 rounds by hand. */
+public class ExperimentHarness {
+	private final int trials;
+	private final int maxRounds;
+	private final int drawStreak;
+	private final int boardSize;
+	private final int winLength;
+
+	public ExperimentHarness(int trials, int maxRounds, int drawStreak) {
+		this(trials, maxRounds, drawStreak, 3, 3);
+	}
+
+	public ExperimentHarness(int trials, int maxRounds, int drawStreak, int boardSize, int winLength) {
+		if (trials < 1 || maxRounds < 1 || drawStreak < 1 || drawStreak > maxRounds)
+			throw new IllegalArgumentException("Need at least one trial, and a draw streak between 1 and the number of rounds.");
+		BoardGeometry.of(boardSize, winLength); // fails fast on a bad configuration
+		this.trials = trials;
+		this.maxRounds = maxRounds;
+		this.drawStreak = drawStreak;
+		this.boardSize = boardSize;
+		this.winLength = winLength;
+	}
+
+	/* How one trial went. */
+	public static final class Trial {
+		public final int gamesPlayed;
+		public final int convergedAfter;
+		// ^ games played before the final streak of draws began, or -1 if the trial never converged
+		public final int xWins;
+		public final int oWins;
+		public final int draws;
+		public final int strategiesLearned;
+
+		Trial(int gamesPlayed, int convergedAfter, int xWins, int oWins, int draws, int strategiesLearned) {
+			this.gamesPlayed = gamesPlayed;
+			this.convergedAfter = convergedAfter;
+			this.xWins = xWins;
+			this.oWins = oWins;
+			this.draws = draws;
+			this.strategiesLearned = strategiesLearned;
+		}
+
+		public boolean converged() {
+			return convergedAfter >= 0;
+		}
+	}
+
+	/* Runs every trial on the given pool and returns them in trial order. */
+	public Trial[] run(ForkJoinPool pool) {
+		return run(pool, new SplittableRandom().nextLong());
+	}
+
+	/* As above, with the trials' random sources split from one seeded by the given seed. */
+	public Trial[] run(ForkJoinPool pool, long seed) {
+		SplittableRandom master = new SplittableRandom(seed);
+		LinkedList<ForkJoinTask<Trial>> tasks = new LinkedList<ForkJoinTask<Trial>>();
+		for (int i = 0; i < trials; i++) {
+			final SplittableRandom random = master.split();
+			tasks.add(pool.submit(new Callable<Trial>() {
+				public Trial call() {
+					return runTrial(random);
+				}
+			}));
+		}
+
+		Trial[] results = new Trial[trials];
+		for (int i = 0; i < trials; i++)
+			results[i] = tasks.get(i).join();
+		return results;
+	}
+
+	/* Plays one trial from scratch until it converges or runs out of rounds. */
+	public Trial runTrial() {
+		return runTrial(new SplittableRandom());
+	}
+
+	/* As above, drawing every random choice from the given source. */
+	public Trial runTrial(SplittableRandom random) {
+		TicTacToe t = new TicTacToe("computer", "computer", boardSize, winLength);
+		t.setRandom(random);
+		int xWins = 0, oWins = 0, draws = 0;
+		int streak = 0;
+		int games = 0;
+		while (games < maxRounds && streak < drawStreak) {
+			Game g = t.playGame();
+			games++;
+			if (g.wasDraw()) {
+				draws++;
+				streak++;
+			}
+			else {
+				streak = 0;
+				if (g.getWinner().playerName().equals("X"))
+					xWins++;
+				else oWins++;
+			}
+		}
+		return new Trial(games, streak == drawStreak ? games - drawStreak : -1, xWins, oWins, draws,
+				t.winningStrats().size());
+	}
+
+	/* Summarizes the trials: how many converged, and the distribution of games it took them. */
+	public static String report(Trial[] results) {
+		int[] convergence = new int[results.length];
+		int converged = 0;
+		long games = 0, xWins = 0, oWins = 0, draws = 0;
+		for (int i = 0; i < results.length; i++) {
+			Trial trial = results[i];
+			if (trial.converged())
+				convergence[converged++] = trial.convergedAfter;
+			games += trial.gamesPlayed;
+			xWins += trial.xWins;
+			oWins += trial.oWins;
+			draws += trial.draws;
+		}
+		Arrays.sort(convergence, 0, converged);
+
+		StringBuilder report = new StringBuilder();
+		report.append(converged).append(" of ").append(results.length).append(" trials converged (")
+				.append(String.format("%.1f", 100.0*converged/results.length)).append("%)\n");
+		if (converged > 0) {
+			long sum = 0;
+			for (int i = 0; i < converged; i++)
+				sum += convergence[i];
+			report.append("games to convergence: min ").append(convergence[0])
+					.append(", median ").append(convergence[(converged-1)/2])
+					.append(", mean ").append(String.format("%.1f", (double) sum/converged))
+					.append(", p90 ").append(convergence[(int) Math.ceil(0.9*converged) - 1])
+					.append(", max ").append(convergence[converged-1]).append('\n');
+		}
+		report.append(games).append(" games played: X won ").append(xWins).append(", O won ").append(oWins)
+				.append(", ").append(draws).append(" drawn");
+		return report.toString();
+	}
+
+	/* Usage: ExperimentHarness [trials] [maxRounds] [drawStreak] [threads] [seed] */
+	public static void main(String[] args) {
+		int trials = args.length > 0 ? Integer.parseInt(args[0]) : 40;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+		int streak = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+		int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+		long seed = args.length > 4 ? Long.parseLong(args[4]) : new SplittableRandom().nextLong();
+
+		ExperimentHarness harness = new ExperimentHarness(trials, rounds, streak);
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		long start = System.nanoTime();
+		Trial[] results;
+		try {
+			results = harness.run(pool, seed);
+		} finally {
+			pool.shutdown();
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		System.out.println(trials + " trials of up to " + rounds + " rounds (converged = " + streak
+				+ " draws in a row) on " + threads + " threads in " + String.format("%.2f", seconds) + "s, seed " + seed);
+		System.out.println(report(results));
+	}
+}
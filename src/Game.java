@@ -5,26 +5,52 @@ public class Game {
 	private LinkedList<Integer> allWinnersMoves, allLosersMoves, drawTurns1, drawTurns2;
 	private Player whoWon;
 	private Player whoLost;
+	private Strategy lostWith;
 	private Player whoseTurn;
 	private Board currentBoard;
 	private boolean wasDraw;
 	private final Strategy NULL_STRAT = new Strategy();
+	private GameListener[] listeners = NO_LISTENERS;
+	private static final GameListener[] NO_LISTENERS = new GameListener[0];
 
 	public Game(LinkedList<Player> players) {
+		this(players, 3, 3);
+	}
+
+	/* Creates a game played on a boardSize x boardSize board, won by getting winLength in a row. */
+	public Game(LinkedList<Player> players, int boardSize, int winLength) {
 		this.players = players;
-		currentBoard = new Board();
+		currentBoard = new Board(boardSize, winLength);
 	}
 
 	public void playRound() {
+		if (!Metrics.ENABLED) {
+			play();
+			return;
+		}
+
+		Metrics.RoundEvent event = new Metrics.RoundEvent();
+		event.begin();
+		long start = System.nanoTime();
+		play();
+		Metrics.roundPlayed(event, start, this, currentBoard);
+	}
+
+	private void play() {
 		players.get(0).reset();
 		players.get(1).reset();
+		for (int i = 0; i < listeners.length; i++)
+			listeners[i].gameStarted(this, currentBoard);
 
 		while (!currentBoard.gameWon() && !currentBoard.gameDrawn()) {
 			whoseTurn = players.removeFirst();
 			players.addLast(whoseTurn);
-			System.out.println(whoseTurn.toString() + " plays:");
-			currentBoard = whoseTurn.takeTurn(currentBoard);
-			System.out.println(currentBoard.toString());
+			for (int i = 0; i < listeners.length; i++)
+				listeners[i].turnStarted(whoseTurn, currentBoard);
+			int square = whoseTurn.chooseTurn(currentBoard);
+			currentBoard.playerTakesTurn(whoseTurn, square);
+			for (int i = 0; i < listeners.length; i++)
+				listeners[i].movePlayed(whoseTurn, square, currentBoard);
 		}
 
 		if (currentBoard.gameWon()) {
@@ -36,10 +62,10 @@ public class Game {
 			allLosersMoves.addAll(whoLost.getMoves());
 
 			// if the loser was attempting to play some known winning strat at the end of the game
-			// and still got beaten, we mark this as an unfavourable strategy:
+			// and still got beaten, it should be marked as an unfavourable strategy (see getLosingStrat):
 			if (whoLost.playerType().equalsIgnoreCase("computer") &&
 					!whoLost.getCurrentStrat().equals(NULL_STRAT))
-				whoLost.getCurrentStrat().augmentLosses();
+				lostWith = whoLost.getCurrentStrat();
 		}
 		else {
 			wasDraw = true;
@@ -48,12 +74,38 @@ public class Game {
 			drawTurns1.addAll(players.get(0).getMoves());
 			drawTurns2.addAll(players.get(1).getMoves());
 		}
+
+		players.get(0).gameEnded(this);
+		players.get(1).gameEnded(this);
+		for (int i = 0; i < listeners.length; i++)
+			listeners[i].gameEnded(this, currentBoard);
+	}
+
+	/* Registers a listener for this game's events. Must be called before playRound(). */
+	public void addListener(GameListener listener) {
+		GameListener[] more = Arrays.copyOf(listeners, listeners.length+1);
+		more[listeners.length] = listener;
+		listeners = more;
+	}
+
+	public Board getBoard() {
+		return currentBoard;
+	}
+
+	public Player getWinner() {
+		return whoWon;
 	}
 	
 	public Player getLoser() {
 		return whoLost;
 	}
 
+	/* Returns the known winning strategy the loser was attempting when they lost, or null. The
+	 * game leaves charging it with the loss to whoever learns from the game. */
+	public Strategy getLosingStrat() {
+		return lostWith;
+	}
+
 	public LinkedList<Integer> getWinningMoves() {
 		return allWinnersMoves;
 	}
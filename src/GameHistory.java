@@ -0,0 +1,212 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+
+/* A bounded record of finished games, each packed into one long, kept in a fixed-capacity ring
+ * buffer: once it is full, every new game overwrites the oldest one, so the history never takes
+ * more than 8 bytes per slot however many games are played. Games can also be spilled to an
+ * append-only log file as they are recorded, to keep all of them without keeping them in memory.
+ *
+ * Encoding (only boards of at most MAX_SQUARES squares fit): 4 bits per square, square #1 lowest,
+ * holding the ply (1-based) at which the square was played or 0 if it was not; then the outcome
+ * in 2 bits (X_WON, O_WON or DRAW) and the side that moved first in 1 bit.
+ *
+ * Log file layout (big-endian): MAGIC, VERSION, board size and win length as ints, then one long
+ * per game in the order they were played. */
+public class GameHistory implements Closeable {
+	public static final int MAX_SQUARES = 9;
+	// ^ 4 bits per square holds plies 1 to 15, and 9 squares leave room for the outcome
+	public static final int X_WON = 1;
+	public static final int O_WON = 2;
+	public static final int DRAW = 3;
+	static final int MAGIC = 0x54545448; // "TTTH"
+	static final int VERSION = 1;
+	static final int HEADER_BYTES = 16;
+	private static final int OUTCOME_SHIFT = 4*MAX_SQUARES;
+	private static final int FIRST_MOVER_SHIFT = OUTCOME_SHIFT + 2;
+	private static final int SPILL_BUFFER_BYTES = 8192;
+
+	private final int boardSize;
+	private final int winLength;
+	private final long[] games;
+	private int next;
+	// ^ the slot the next game goes in
+	private long recorded;
+	// ^ games recorded in total, including any already overwritten
+	private FileChannel spill;
+	private ByteBuffer spillBuffer;
+
+	public GameHistory(int capacity, int boardSize, int winLength) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("A game history needs room for at least one game.");
+		if (!fits(BoardGeometry.of(boardSize, winLength)))
+			throw new IllegalArgumentException("Game histories only support boards of at most " + MAX_SQUARES + " squares");
+		this.boardSize = boardSize;
+		this.winLength = winLength;
+		games = new long[capacity];
+	}
+
+	/* Can games on boards of the given layout be recorded? */
+	public static boolean fits(BoardGeometry geometry) {
+		return geometry.squares() <= MAX_SQUARES;
+	}
+
+	/* Records the finished game on the given board, overwriting the oldest game if the history is full. */
+	public void record(Board finished) throws IOException {
+		long game = encode(finished);
+		games[next] = game;
+		next = next+1 == games.length ? 0 : next+1;
+		recorded++;
+		if (spill != null) {
+			spillBuffer.putLong(game);
+			if (!spillBuffer.hasRemaining())
+				flush();
+		}
+	}
+
+	/* Packs the finished game on the given board into a long (see above). */
+	public static long encode(Board finished) {
+		long game = 0;
+		for (int ply = 0; ply < finished.movesPlayed(); ply++)
+			game |= (long) (ply+1) << 4*(finished.moveAt(ply)-1);
+		int outcome = finished.winner() == Board.X ? X_WON : finished.winner() == Board.O ? O_WON : DRAW;
+		game |= (long) outcome << OUTCOME_SHIFT;
+		if (finished.movesPlayed() > 0)
+			game |= (long) finished.sideAt(finished.moveAt(0)) << FIRST_MOVER_SHIFT;
+		return game;
+	}
+
+	/* Returns the ply (1 being the first move) at which the given square was played in an
+	 * encoded game, or 0 if it was not played. */
+	public static int plyOf(long game, int square) {
+		return (int) (game >>> 4*(square-1)) & 0xF;
+	}
+
+	/* Returns X_WON, O_WON or DRAW for an encoded game. */
+	public static int outcome(long game) {
+		return (int) (game >>> OUTCOME_SHIFT) & 3;
+	}
+
+	/* Returns the side (X or O) that moved first in an encoded game. */
+	public static int firstMover(long game) {
+		return (int) (game >>> FIRST_MOVER_SHIFT) & 1;
+	}
+
+	/* Returns the squares played in an encoded game, in the order they were played. */
+	public static int[] moves(long game) {
+		int count = 0;
+		for (int square = 1; square <= MAX_SQUARES; square++)
+			count = Math.max(count, plyOf(game, square));
+		int[] moves = new int[count];
+		for (int square = 1; square <= MAX_SQUARES; square++) {
+			int ply = plyOf(game, square);
+			if (ply > 0)
+				moves[ply-1] = square;
+		}
+		return moves;
+	}
+
+	/* Returns the number of games held, at most the capacity. */
+	public int size() {
+		return (int) Math.min(recorded, games.length);
+	}
+
+	public int capacity() {
+		return games.length;
+	}
+
+	/* Returns the number of games recorded in total, including those since overwritten. */
+	public long recorded() {
+		return recorded;
+	}
+
+	/* Returns the i-th oldest game still held (0 being the oldest). */
+	public long get(int i) {
+		if (i < 0 || i >= size())
+			throw new IndexOutOfBoundsException("Game " + i + " of " + size());
+		int oldest = recorded > games.length ? next : 0;
+		return games[(oldest + i) % games.length];
+	}
+
+	/* Returns the most recently recorded game. */
+	public long last() {
+		return get(size()-1);
+	}
+
+	/* From now on also appends every recorded game to the given log file, creating it (with its
+	 * header) if it does not exist. Games are written in batches; see flush(). */
+	public void spillTo(Path file) throws IOException {
+		close();
+		if (Files.exists(file) && Files.size(file) > 0) {
+			try (FileChannel existing = FileChannel.open(file, StandardOpenOption.READ)) {
+				checkHeader(existing, file, boardSize, winLength);
+			}
+		}
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.APPEND);
+		try {
+			if (channel.size() == 0) {
+				ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+				header.putInt(MAGIC).putInt(VERSION).putInt(boardSize).putInt(winLength);
+				header.flip();
+				while (header.hasRemaining())
+					channel.write(header);
+			}
+		} catch (IOException ex) {
+			channel.close();
+			throw ex;
+		}
+		spill = channel;
+		spillBuffer = ByteBuffer.allocate(SPILL_BUFFER_BYTES);
+	}
+
+	/* Checks that an existing log file was written for the given board. */
+	static void checkHeader(FileChannel channel, Path file, int boardSize, int winLength) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+		while (header.hasRemaining() && channel.read(header, header.position()) > 0)
+			;
+		header.flip();
+		if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC)
+			throw new IOException(file + " is not a game log");
+		int version = header.getInt();
+		if (version != VERSION)
+			throw new IOException(file + " has game log version " + version + ", expected " + VERSION);
+		int savedSize = header.getInt();
+		int savedWinLength = header.getInt();
+		if (savedSize != boardSize || savedWinLength != winLength)
+			throw new IOException(file + " holds games on a " + savedSize + " x " + savedSize + " board with "
+					+ savedWinLength + " in a row, not " + boardSize + " x " + boardSize + " with " + winLength);
+	}
+
+	/* Writes any games waiting to be spilled to the log file. */
+	public void flush() throws IOException {
+		if (spill == null)
+			return;
+		spillBuffer.flip();
+		while (spillBuffer.hasRemaining())
+			spill.write(spillBuffer);
+		spillBuffer.clear();
+	}
+
+	/* Flushes and closes the log file, if any; the in-memory history stays usable. */
+	public void close() throws IOException {
+		if (spill == null)
+			return;
+		try {
+			flush();
+		} finally {
+			spill.close();
+			spill = null;
+			spillBuffer = null;
+		}
+	}
+
+	public int boardSize() {
+		return boardSize;
+	}
+
+	public int winLength() {
+		return winLength;
+	}
+}
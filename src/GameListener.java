@@ -0,0 +1,21 @@
+/* Receives the events of a Game as it is played. Games with no listeners attached skip
+ * these calls entirely, so nothing is formatted or printed during silent self-play.
+ * Every method does nothing by default; override the ones you need. */
+public interface GameListener {
+
+	/* Called once, before the first move, with the empty board. */
+	default void gameStarted(Game game, Board board) {
+	}
+
+	/* Called before the given player chooses a move. */
+	default void turnStarted(Player whoseTurn, Board board) {
+	}
+
+	/* Called after the given player has played the given square. */
+	default void movePlayed(Player whoseTurn, int square, Board board) {
+	}
+
+	/* Called once the game has been won or drawn and the result recorded in the Game. */
+	default void gameEnded(Game game, Board board) {
+	}
+}
@@ -0,0 +1,154 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+
+/* Rebuilds or re-scores a knowledge base offline from a game log (see GameHistory.spillTo),
+ * without playing the games again. The log is streamed through one fixed-size buffer, so memory
+ * use does not grow with the file, and each game is fed to the same learning TicTacToe.playGame
+ * uses (learnWin/learnDraw).
+ *
+ * Loss attribution can only be approximated: during play, playGame charges a loss to whatever
+ * strategy the loser was attempting when the game ended (Game.getLosingStrat) before calling
+ * learnWin, and that depends on the loser's state during the game, which is not in the log. Here
+ * the loss goes to the best-ranked strategy the loser could still have been playing on the final
+ * board, the one Player.validStratExists would pick. */
+public class GameLogReplayer {
+	private static final int BATCH_GAMES = 8192;
+	// ^ games per read; the buffer is this many longs
+
+	private final TicTacToe into;
+	private final Board board;
+	private final int[] moves;
+	// ^ scratch: the current game's squares in play order
+	private long gamesReplayed;
+
+	/* Replays into the given context's knowledge; its board size and win length must match the logs'. */
+	public GameLogReplayer(TicTacToe into) {
+		this.into = into;
+		board = new Board(into.boardSize(), into.winLength());
+		moves = new int[GameHistory.MAX_SQUARES];
+	}
+
+	/* Streams every game in the given log into the knowledge base and returns how many there were. */
+	public long replay(Path log) throws IOException {
+		long replayed = 0;
+		try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ)) {
+			GameHistory.checkHeader(channel, log, into.boardSize(), into.winLength());
+			channel.position(GameHistory.HEADER_BYTES);
+
+			ByteBuffer batch = ByteBuffer.allocateDirect(8*BATCH_GAMES);
+			boolean ended = false;
+			while (!ended) {
+				ended = channel.read(batch) < 0;
+				batch.flip();
+				while (batch.remaining() >= 8) {
+					replayGame(batch.getLong(), log);
+					replayed++;
+				}
+				if (ended && batch.hasRemaining())
+					throw new IOException(log + " is truncated in the middle of a game");
+				batch.compact();
+			}
+		}
+		gamesReplayed += replayed;
+		return replayed;
+	}
+
+	/* Learns from one encoded game, as if it had just been played. */
+	private void replayGame(long game, Path log) throws IOException {
+		int outcome = GameHistory.outcome(game);
+		int count = 0;
+		for (int square = 1; square <= GameHistory.MAX_SQUARES; square++) {
+			int ply = GameHistory.plyOf(game, square);
+			if (ply > 0) {
+				if (ply > moves.length)
+					throw new IOException(log + " holds a corrupt game: " + Long.toHexString(game));
+				moves[ply-1] = square;
+				count = Math.max(count, ply);
+			}
+		}
+		if (outcome == 0 || count == 0 || count > board.squares())
+			throw new IOException(log + " holds a corrupt game: " + Long.toHexString(game));
+
+		while (board.undo() >= 0)
+			;
+		int firstMover = GameHistory.firstMover(game);
+		for (int ply = 0; ply < count; ply++)
+			board.play(moves[ply], firstMover ^ (ply & 1));
+
+		if (outcome == GameHistory.DRAW)
+			into.learnDraw(movesOf(1 - lastMover(firstMover, count), firstMover, count),
+					movesOf(lastMover(firstMover, count), firstMover, count));
+		else {
+			int winner = outcome == GameHistory.X_WON ? Board.X : Board.O;
+			attributeLoss(winner, firstMover, count);
+			into.learnWin(movesOf(winner, firstMover, count));
+		}
+	}
+
+	private static int lastMover(int firstMover, int count) {
+		return firstMover ^ ((count-1) & 1);
+	}
+
+	/* Returns the given side's moves in the current game, in play order. */
+	private LinkedList<Integer> movesOf(int side, int firstMover, int count) {
+		LinkedList<Integer> played = new LinkedList<Integer>();
+		for (int ply = side == firstMover ? 0 : 1; ply < count; ply += 2)
+			played.add(moves[ply]);
+		return played;
+	}
+
+	/* Charges the loss to the best-ranked strategy the loser could still have been playing. No
+	 * strategy through one of the winner's squares can be, so, as in Player's frontier, the store's
+	 * inverted index (StrategyStore.containing) rules those out a word of ranks at a time, best
+	 * first, and only the rest are checked with isValid. */
+	private void attributeLoss(int winner, int firstMover, int count) {
+		StrategyStore strats = into.winningStrats();
+		long[] loserMoves = board.marks(1 - winner);
+		int ranks = strats.size();
+		for (int w = 0; w << 6 < ranks; w++) {
+			int left = ranks - (w << 6);
+			long candidates = left >= 64 ? -1L : (1L << left) - 1;
+			for (int ply = winner == firstMover ? 0 : 1; ply < count; ply += 2) {
+				long[] through = strats.containing(moves[ply]);
+				if (w < through.length)
+					candidates &= ~through[w];
+			}
+			for (; candidates != 0; candidates &= candidates-1) {
+				Strategy s = strats.get((w << 6) + Long.numberOfTrailingZeros(candidates));
+				if (s.isValid(board, loserMoves)) {
+					s.augmentLosses();
+					return;
+				}
+			}
+		}
+	}
+
+	public long gamesReplayed() {
+		return gamesReplayed;
+	}
+
+	/* Usage: GameLogReplayer log [knowledgeFile] - rebuilds a 3 x 3 knowledge base from the given
+	 * log, reporting the replay speed, and saves it to the given file if there is one. */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.out.println("Usage: GameLogReplayer log [knowledgeFile]");
+			return;
+		}
+		Path log = Paths.get(args[0]);
+		TicTacToe rebuilt = new TicTacToe("computer", "computer");
+		GameLogReplayer replayer = new GameLogReplayer(rebuilt);
+
+		long start = System.nanoTime();
+		long games = replayer.replay(log);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.println("Replayed " + games + " games in " + String.format("%.2f", seconds) + "s ("
+				+ String.format("%.0f", games/seconds) + " games/s, "
+				+ String.format("%.1f", Files.size(log)/seconds/(1024*1024)) + " MB/s); "
+				+ rebuilt.winningStrats().size() + " strategies known");
+		if (args.length > 1)
+			rebuilt.saveKnowledge(Paths.get(args[1]));
+	}
+}
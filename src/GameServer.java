@@ -0,0 +1,222 @@
+import java.io.*;
+import java.lang.reflect.*;
+import java.net.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/* Hosts human vs. computer games over TCP, any number at once. Every connection is a session
+ * running on its own task: a virtual thread where the JVM has them (Java 21 and later), otherwise
+ * a thread from a cached pool. Each session has its own TicTacToe; against computer players the
+ * sessions all read and learn into one SharedKnowledge, so the computer learns from every game
+ * played on the server without the sessions locking each other. Sessions record no game history,
+ * and the perfect players' search table and the solution tables are shared per board geometry, so
+ * a session costs little more than its board. The human's moves come from the connection
+ * through the session's MoveSource.
+ *
+ * The protocol is line-based text. The server sends
+ *   WELCOME <size> <winLength> <X|O>   once, saying which side the client plays
+ *   BOARD <cells>                      at the start of each game: one of X, O or . per square
+ *   PLAYED <X|O> <square>              after every move, by either side
+ *   MOVE? <open squares>               when it is the client's turn, the squares comma-separated
+ *   ERROR <reason>                     after a reply that is not an open square, before asking again
+ *   END <X|O|DRAW>                     when a game is over, followed by
+ *   AGAIN?                             to which the client replies yes to play another game
+ * and the client replies to MOVE? with a square number, or QUIT to leave. */
+public class GameServer implements Closeable {
+	private final ServerSocket listener;
+	private final ExecutorService sessions;
+	private final String computerType;
+	private final int boardSize;
+	private final int winLength;
+	private final SharedKnowledge knowledge;
+	// ^ for computer opponents; null for the other types, which do not learn
+	private final AtomicLong sessionsStarted = new AtomicLong();
+	private final AtomicLong gamesFinished = new AtomicLong();
+	private volatile boolean closed;
+
+	/* Listens on the given port (0 for any free port) for games against the given computer player type. */
+	public GameServer(int port, String computerType, int boardSize, int winLength) throws IOException {
+		BoardGeometry.of(boardSize, winLength); // fails fast on a bad configuration
+		this.computerType = computerType;
+		this.boardSize = boardSize;
+		this.winLength = winLength;
+		knowledge = computerType.equalsIgnoreCase("computer") ? new SharedKnowledge(boardSize, winLength) : null;
+		listener = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+		sessions = sessionExecutor();
+	}
+
+	/* One task per session: a virtual thread if this JVM has them, otherwise a pooled thread. */
+	private static ExecutorService sessionExecutor() {
+		try {
+			Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) virtual.invoke(null);
+		} catch (ReflectiveOperationException ex) {
+			return Executors.newCachedThreadPool(new ThreadFactory() {
+				private final AtomicInteger count = new AtomicInteger();
+
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "session-" + count.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+	}
+
+	public int port() {
+		return listener.getLocalPort();
+	}
+
+	/* Accepts connections until close() is called, starting a session for each. */
+	public void serve() throws IOException {
+		while (!closed) {
+			final Socket connection;
+			try {
+				connection = listener.accept();
+			} catch (SocketException ex) {
+				if (closed)
+					return;
+				throw ex;
+			}
+			sessionsStarted.incrementAndGet();
+			sessions.execute(new Runnable() {
+				public void run() {
+					try (Socket s = connection) {
+						s.setTcpNoDelay(true);
+						new Session(s).run();
+					} catch (IOException | UncheckedIOException | SessionEnded ex) {
+						// the client went away; nothing to clean up beyond the socket
+					}
+				}
+			});
+		}
+	}
+
+	public void close() throws IOException {
+		closed = true;
+		listener.close();
+		sessions.shutdownNow();
+		if (knowledge != null)
+			knowledge.close();
+	}
+
+	/* Returns the knowledge base computer opponents share, or null if they are not learning players. */
+	public SharedKnowledge knowledge() {
+		return knowledge;
+	}
+
+	public long sessionsStarted() {
+		return sessionsStarted.get();
+	}
+
+	public long gamesFinished() {
+		return gamesFinished.get();
+	}
+
+	/* Thrown out of a game when its client quits or disconnects. */
+	private static final class SessionEnded extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		SessionEnded() {
+			super(null, null, false, false);
+		}
+	}
+
+	/* One client's games: supplies the human's moves and reports every event back to the client. */
+	private final class Session implements MoveSource, GameListener {
+		private final BufferedReader in;
+		private final PrintWriter out;
+		private final TicTacToe games;
+
+		Session(Socket connection) throws IOException {
+			in = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.US_ASCII));
+			out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(connection.getOutputStream(),
+					StandardCharsets.US_ASCII)));
+			games = knowledge != null ? new TicTacToe("human", computerType, knowledge)
+					: new TicTacToe("human", computerType, boardSize, winLength);
+			games.setHumanMoveSource(this);
+			games.addGameListener(this);
+		}
+
+		void run() throws IOException {
+			out.println("WELCOME " + boardSize + " " + winLength + " X");
+			do {
+				games.playGame();
+				gamesFinished.incrementAndGet();
+				out.println("AGAIN?");
+				out.flush();
+			} while ("yes".equalsIgnoreCase(readLine()));
+		}
+
+		public int chooseMove(Player p, Board onBoard) {
+			while (true) {
+				out.println("MOVE? " + openSquares(onBoard));
+				out.flush();
+				String reply = readLine();
+				if (reply.equalsIgnoreCase("QUIT"))
+					throw new SessionEnded();
+				try {
+					int square = Integer.parseInt(reply.trim());
+					if (square >= 1 && square <= onBoard.squares() && onBoard.isOpen(square))
+						return square;
+					out.println("ERROR " + square + " is not an open square");
+				} catch (NumberFormatException ex) {
+					out.println("ERROR expected a square number or QUIT");
+				}
+			}
+		}
+
+		private String readLine() {
+			try {
+				String line = in.readLine();
+				if (line == null)
+					throw new SessionEnded();
+				return line;
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+		}
+
+		public void gameStarted(Game game, Board board) {
+			StringBuilder cells = new StringBuilder(board.squares());
+			for (int square = 1; square <= board.squares(); square++) {
+				int side = board.sideAt(square);
+				cells.append(side == Board.X ? 'X' : side == Board.O ? 'O' : '.');
+			}
+			out.println("BOARD " + cells);
+		}
+
+		public void movePlayed(Player whoseTurn, int square, Board board) {
+			out.println("PLAYED " + whoseTurn.playerName() + " " + square);
+		}
+
+		public void gameEnded(Game game, Board board) {
+			out.println("END " + (game.wasDraw() ? "DRAW" : game.getWinner().playerName()));
+		}
+	}
+
+	private static String openSquares(Board onBoard) {
+		StringBuilder open = new StringBuilder();
+		int[] squares = Bits.squares(onBoard.openSquares());
+		for (int i = 0; i < squares.length; i++) {
+			if (i > 0)
+				open.append(',');
+			open.append(squares[i]);
+		}
+		return open.toString();
+	}
+
+	/* Usage: GameServer [port] [computerType] [size] [winLength] */
+	public static void main(String[] args) throws IOException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : 4004;
+		String computerType = args.length > 1 ? args[1] : "computer";
+		int size = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+		int winLength = args.length > 3 ? Integer.parseInt(args[3]) : size;
+
+		GameServer server = new GameServer(port, computerType, size, winLength);
+		System.out.println("Serving " + size + " x " + size + " games against " + computerType + " players on port " + server.port());
+		server.serve();
+	}
+}
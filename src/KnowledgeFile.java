@@ -0,0 +1,163 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/* Saves and loads a StrategyStore in a compact, versioned binary format, so a deployment can
+ * start from what earlier runs learned instead of from nothing.
+ *
+ * Saving happens in two steps: snapshot() copies the store into a byte buffer on the calling
+ * (training) thread, which is quick, and the buffer is then written to disk - by saveAsync() on
+ * a background thread - while training carries on. Files are written next to the target and
+ * moved into place, so readers never see a half-written file. Loading memory-maps the file.
+ *
+ * File layout (big-endian): MAGIC, VERSION, board size, win length and strategy count as ints,
+ * then per strategy in ranked order: a flags byte (1 = draw strategy), wins and losses as ints,
+ * the move count as a byte, the move mask as one long per Board word and the moves in play
+ * order as one unsigned byte each. */
+public final class KnowledgeFile {
+	private static final int MAGIC = 0x5454544B; // "TTTK"
+	private static final int VERSION = 1;
+	private static final int HEADER_BYTES = 20;
+	private static final int MAX_SQUARES = 255;
+	// ^ moves are stored as unsigned bytes
+	private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "knowledge-writer");
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
+	private KnowledgeFile() {
+	}
+
+	/* Encodes the store's current contents into a buffer ready to be written (see write()). */
+	public static ByteBuffer snapshot(StrategyStore store, int boardSize, int winLength) {
+		BoardGeometry geometry = BoardGeometry.of(boardSize, winLength);
+		if (geometry.squares() > MAX_SQUARES)
+			throw new IllegalArgumentException("Boards of more than " + MAX_SQUARES + " squares cannot be saved");
+		int words = geometry.words();
+
+		int bytes = HEADER_BYTES;
+		for (int i = 0; i < store.size(); i++)
+			bytes += 1 + 4 + 4 + 1 + 8*words + store.get(i).size();
+
+		ByteBuffer buffer = ByteBuffer.allocate(bytes);
+		buffer.putInt(MAGIC).putInt(VERSION).putInt(boardSize).putInt(winLength).putInt(store.size());
+		for (int i = 0; i < store.size(); i++) {
+			Strategy s = store.get(i);
+			long[] mask = s.getMask();
+			buffer.put((byte) (s.isDrawStrat() ? 1 : 0));
+			buffer.putInt(s.getWins()).putInt(s.getLosses());
+			buffer.put((byte) s.size());
+			for (int w = 0; w < words; w++)
+				buffer.putLong(w < mask.length ? mask[w] : 0L);
+			for (int m = 0; m < s.size(); m++)
+				buffer.put((byte) s.getMoveAt(m));
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	/* Writes a snapshot to the given file, replacing it atomically. If the write fails, the
+	 * partial file is removed and the old file (if any) is left as it was. */
+	public static void write(ByteBuffer snapshot, Path file) throws IOException {
+		ByteBuffer toWrite = snapshot.duplicate();
+		Path partial = file.resolveSibling(file.getFileName() + ".part");
+		try {
+			try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING)) {
+				while (toWrite.hasRemaining())
+					channel.write(toWrite);
+			}
+			Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException | RuntimeException ex) {
+			try {
+				Files.deleteIfExists(partial);
+			} catch (IOException cleanup) {
+				ex.addSuppressed(cleanup);
+			}
+			throw ex;
+		}
+	}
+
+	public static void save(StrategyStore store, int boardSize, int winLength, Path file) throws IOException {
+		write(snapshot(store, boardSize, winLength), file);
+	}
+
+	/* Snapshots the store now and writes it to the given file in the background. Must be called
+	 * from the thread updating the store; the store can be updated again as soon as this returns. */
+	public static Future<Path> saveAsync(StrategyStore store, int boardSize, int winLength, final Path file) {
+		final ByteBuffer snapshot = snapshot(store, boardSize, winLength);
+		return WRITER.submit(new Callable<Path>() {
+			public Path call() throws IOException {
+				write(snapshot, file);
+				return file;
+			}
+		});
+	}
+
+	/* Replaces the store's contents with the strategies in the given file, which must have been
+	 * saved for the same board configuration. The whole file is read and checked first, so if it
+	 * turns out to be bad the store keeps what it had. */
+	public static void load(Path file, StrategyStore into, int boardSize, int winLength) throws IOException {
+		ByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+
+		try {
+			if (buffer.getInt() != MAGIC)
+				throw new IOException(file + " is not a strategy file");
+			int version = buffer.getInt();
+			if (version != VERSION)
+				throw new IOException(file + " has strategy file version " + version + ", expected " + VERSION);
+			int savedSize = buffer.getInt();
+			int savedWinLength = buffer.getInt();
+			if (savedSize != boardSize || savedWinLength != winLength)
+				throw new IOException(file + " holds strategies for a " + savedSize + " x " + savedSize + " board with "
+						+ savedWinLength + " in a row, not " + boardSize + " x " + boardSize + " with " + winLength);
+			BoardGeometry geometry = BoardGeometry.of(boardSize, winLength);
+			int words = geometry.words();
+			int count = buffer.getInt();
+			// checked before anything is sized by it, against the size of a strategy with no moves:
+			if (count < 0 || count > buffer.remaining() / (1 + 4 + 4 + 1 + 8*words))
+				throw new IOException(file + " is corrupt: it claims " + count + " strategies, which "
+						+ buffer.remaining() + " bytes cannot hold");
+
+			ArrayList<Strategy> loaded = new ArrayList<Strategy>(count);
+			long[] mask = new long[words];
+			for (int i = 0; i < count; i++) {
+				boolean isDraw = (buffer.get() & 1) != 0;
+				int wins = buffer.getInt();
+				int losses = buffer.getInt();
+				int moves = buffer.get() & 0xFF;
+				for (int w = 0; w < words; w++)
+					mask[w] = buffer.getLong();
+				LinkedList<Integer> order = new LinkedList<Integer>();
+				for (int m = 0; m < moves; m++) {
+					int square = buffer.get() & 0xFF;
+					if (square == 0 || square > geometry.squares())
+						throw new IOException(file + " is corrupt: strategy " + i + " plays square " + square
+								+ ", which is not on the board");
+					order.add(square);
+				}
+
+				Strategy s = new Strategy(order, isDraw);
+				if (!Bits.equal(mask, s.getMask()) || Bits.count(mask) != moves)
+					throw new IOException(file + " is corrupt: strategy " + i + "'s moves do not match its mask");
+				s.addCounts(wins - s.getWins(), losses - s.getLosses());
+				loaded.add(s);
+			}
+
+			into.clear();
+			for (int i = 0; i < loaded.size(); i++)
+				into.appendRanked(loaded.get(i));
+		} catch (BufferUnderflowException ex) {
+			throw new IOException(file + " is truncated", ex);
+		}
+	}
+}
\ No newline at end of file
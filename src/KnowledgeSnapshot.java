@@ -0,0 +1,56 @@
+/* One published version of a SharedKnowledge: its strategies, ranked, as they stood when the
+ * version was published. A snapshot never changes once published - it holds its own copies of
+ * the strategies, which nobody updates - so any number of games can read it at once without
+ * locking. Learning goes through SharedKnowledge.submit() instead. */
+public final class KnowledgeSnapshot implements RankedStrategies {
+	static final KnowledgeSnapshot EMPTY = new KnowledgeSnapshot(new Strategy[0], 0);
+
+	private static final long[] NONE = new long[0];
+
+	private final Strategy[] ranked;
+	private final long version;
+	private final long[][] bySquare;
+	// ^ the inverted index, as in StrategyStore: bit r of bySquare[square] is set if ranked[r] contains the square
+
+	KnowledgeSnapshot(Strategy[] ranked, long version) {
+		this.ranked = ranked;
+		this.version = version;
+		int highest = 0;
+		for (int r = 0; r < ranked.length; r++)
+			for (int i = 0; i < ranked[r].size(); i++)
+				highest = Math.max(highest, ranked[r].getMoveAt(i));
+		bySquare = new long[highest+1][(ranked.length + 63) >>> 6];
+		for (int r = 0; r < ranked.length; r++)
+			for (int i = 0; i < ranked[r].size(); i++)
+				bySquare[ranked[r].getMoveAt(i)][r >>> 6] |= 1L << r;
+	}
+
+	/* Copies the store's strategies, in rank order, into a new snapshot with the given version. */
+	static KnowledgeSnapshot of(StrategyStore store, long version) {
+		Strategy[] copies = new Strategy[store.size()];
+		for (int i = 0; i < copies.length; i++)
+			copies[i] = store.get(i).clone();
+		return new KnowledgeSnapshot(copies, version);
+	}
+
+	public int size() {
+		return ranked.length;
+	}
+
+	public Strategy get(int rank) {
+		return ranked[rank];
+	}
+
+	public Strategy top() {
+		return ranked.length == 0 ? null : ranked[0];
+	}
+
+	public long[] containing(int square) {
+		return square < bySquare.length ? bySquare[square] : NONE;
+	}
+
+	/* Returns this snapshot's version: 0 for the empty knowledge base, then one more per publication. */
+	public long version() {
+		return version;
+	}
+}
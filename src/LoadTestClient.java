@@ -0,0 +1,142 @@
+import java.io.*;
+import java.net.*;
+import java.nio.charset.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/* Load-tests a GameServer: several client threads each open sessions one after another, play
+ * one game per session with random open squares, and leave. Reports sessions per second and the
+ * move latency - from sending a move to the server's next prompt (MOVE? or END), which includes
+ * the computer's reply - as percentiles.
+ *
+ * With no host given, a server is started in-process on a free port first. */
+public class LoadTestClient {
+
+	/* What one client thread saw. */
+	private static final class Results {
+		int sessions;
+		long[] latencies = new long[1024];
+		int latencyCount;
+
+		void latency(long nanos) {
+			if (latencyCount == latencies.length)
+				latencies = Arrays.copyOf(latencies, 2*latencyCount);
+			latencies[latencyCount++] = nanos;
+		}
+	}
+
+	/* Plays one single-game session against the server, recording its move latencies. */
+	private static void playSession(String host, int port, SplittableRandom random, Results results) throws IOException {
+		try (Socket socket = new Socket(host, port)) {
+			socket.setTcpNoDelay(true);
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+			PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(),
+					StandardCharsets.US_ASCII)));
+			long sent = -1;
+			String line;
+			while ((line = in.readLine()) != null) {
+				if (line.startsWith("MOVE? ")) {
+					if (sent >= 0)
+						results.latency(System.nanoTime() - sent);
+					String[] open = line.substring(6).split(",");
+					out.println(open[random.nextInt(open.length)]);
+					out.flush();
+					sent = System.nanoTime();
+				}
+				else if (line.startsWith("END ")) {
+					if (sent >= 0)
+						results.latency(System.nanoTime() - sent);
+					sent = -1;
+				}
+				else if (line.equals("AGAIN?")) {
+					out.println("no");
+					out.flush();
+					break;
+				}
+				else if (line.startsWith("ERROR "))
+					throw new IOException("Server rejected a move: " + line);
+			}
+		}
+		results.sessions++;
+	}
+
+	/* Usage: LoadTestClient [sessions] [clients] [host port] */
+	public static void main(String[] args) throws Exception {
+		final int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		int clients = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+		GameServer local = null;
+		final String host;
+		final int port;
+		if (args.length > 3) {
+			host = args[2];
+			port = Integer.parseInt(args[3]);
+		}
+		else {
+			final GameServer server = new GameServer(0, "computer", 3, 3);
+			Thread serving = new Thread(new Runnable() {
+				public void run() {
+					try {
+						server.serve();
+					} catch (IOException ex) {
+						ex.printStackTrace();
+					}
+				}
+			}, "game-server");
+			serving.setDaemon(true);
+			serving.start();
+			local = server;
+			host = "127.0.0.1";
+			port = server.port();
+		}
+
+		final AtomicInteger remaining = new AtomicInteger(sessions);
+		final SplittableRandom seeds = new SplittableRandom();
+		ExecutorService pool = Executors.newFixedThreadPool(clients);
+		LinkedList<Future<Results>> running = new LinkedList<Future<Results>>();
+		long start = System.nanoTime();
+		for (int c = 0; c < clients; c++) {
+			final SplittableRandom random = seeds.split();
+			running.add(pool.submit(new Callable<Results>() {
+				public Results call() throws IOException {
+					Results results = new Results();
+					while (remaining.getAndDecrement() > 0)
+						playSession(host, port, random, results);
+					return results;
+				}
+			}));
+		}
+
+		int played = 0;
+		long[] latencies = new long[0];
+		double seconds;
+		try {
+			for (int c = 0; c < clients; c++) {
+				Results results = running.get(c).get();
+				played += results.sessions;
+				int from = latencies.length;
+				latencies = Arrays.copyOf(latencies, from + results.latencyCount);
+				System.arraycopy(results.latencies, 0, latencies, from, results.latencyCount);
+			}
+			seconds = (System.nanoTime() - start) / 1e9;
+		} finally {
+			remaining.set(0);
+			// ^ if a session failed, the other clients stop after the one they are playing
+			pool.shutdown();
+			if (local != null)
+				local.close();
+		}
+
+		Arrays.sort(latencies);
+		System.out.println(played + " sessions from " + clients + " clients in " + String.format("%.2f", seconds) + "s ("
+				+ String.format("%.0f", played/seconds) + " sessions/s)");
+		if (latencies.length > 0)
+			System.out.println(latencies.length + " moves; latency p50 " + micros(latencies, 0.50) + "us, p90 "
+					+ micros(latencies, 0.90) + "us, p99 " + micros(latencies, 0.99) + "us, max "
+					+ latencies[latencies.length-1]/1000 + "us");
+	}
+
+	private static long micros(long[] sorted, double fraction) {
+		return sorted[Math.min(sorted.length-1, (int) (fraction*sorted.length))] / 1000;
+	}
+}
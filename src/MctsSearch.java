@@ -0,0 +1,293 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+/* Chooses moves by Monte Carlo tree search: grows a game tree from the current position one node
+ * per iteration, picking branches by UCT (win rate plus an exploration bonus for rarely tried
+ * moves), and scores each new node by finishing the game with random moves. Unlike AlphaBetaSearch
+ * it works on any board size, so it is the engine for boards too big to search exhaustively.
+ *
+ * Searches are root-parallel: every thread grows its own tree from its own copy of the board, so
+ * threads share nothing while searching, and the move tried most often across all the trees is
+ * played. Each move gets a Budget: iterations (shared out between the threads) and optionally
+ * time, whichever runs out first. All searches share one pool of helper threads, sized to the
+ * machine and created the first time a search needs it, so any number of mcts players (e.g. one
+ * per server session) never hold more threads than that and need no closing. Playouts use
+ * play()/undo() on the copy and pick random open squares straight from its open-square mask, so
+ * they allocate nothing. */
+public class MctsSearch {
+	private static final double EXPLORATION = Math.sqrt(2);
+	private static final int CLOCK_CHECK_INTERVAL = 64;
+	// ^ iterations between looks at the clock when there is a time budget
+
+	/* The shared helper pool, which runs all but one of each search's trees (the calling thread
+	 * runs the last one itself); created on first use. */
+	private static final class Helpers {
+		static final ExecutorService POOL = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+				new ThreadFactory() {
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r, "mcts-worker");
+						t.setDaemon(true);
+						return t;
+					}
+				});
+	}
+
+	/* How much searching each move gets: at most iterations iterations, spread over threads
+	 * trees, and at most millis milliseconds if that is positive. Immutable, so one budget can be
+	 * handed to any number of searches on any threads. */
+	public static final class Budget {
+		public static final Budget DEFAULT = new Budget(Integer.getInteger("tictactoe.mcts.iterations", 20000),
+				Long.getLong("tictactoe.mcts.millis", 0L),
+				Integer.getInteger("tictactoe.mcts.threads", Runtime.getRuntime().availableProcessors()));
+		// ^ settable per run with these system properties
+
+		public final int iterations;
+		public final long millis;
+		public final int threads;
+
+		public Budget(int iterations, long millis, int threads) {
+			if (iterations < 1 || threads < 1)
+				throw new IllegalArgumentException("MCTS needs at least one iteration and one thread per move.");
+			this.iterations = iterations;
+			this.millis = millis;
+			this.threads = threads;
+		}
+	}
+
+	private volatile Budget budget;
+	private final SplittableRandom seeds;
+
+	private int lastThreads;
+	private long lastIterations;
+	private long lastNanos;
+	private long totalIterations;
+	private long totalNanos;
+	private long searches;
+
+	/* Searches with the given number of iterations per move, spread over the given number of
+	 * threads, and stops early once the given time (if positive) has passed. */
+	public MctsSearch(int iterations, long millis, int threads) {
+		this(new Budget(iterations, millis, threads));
+	}
+
+	public MctsSearch(Budget budget) {
+		this.budget = budget;
+		seeds = new SplittableRandom();
+	}
+
+	public Budget budget() {
+		return budget;
+	}
+
+	/* Changes the per-move budget for the searches from now on. */
+	public void setBudget(Budget budget) {
+		this.budget = budget;
+	}
+
+	/* One thread's tree. */
+	private static final class Node {
+		final int move;
+		// ^ the square played to reach this node (0 for the root)
+		final int mover;
+		// ^ the side that played it
+		int visits;
+		double score;
+		// ^ total result of the playouts through here for mover: 1 per win, 1/2 per draw
+		Node[] children;
+		int childCount;
+		int[] untried;
+		int untriedCount;
+
+		Node(int move, int mover) {
+			this.move = move;
+			this.mover = mover;
+		}
+
+		/* Lists the moves from this node's position; called once the node is first selected, so
+		 * leaves that are never revisited cost no more than the node itself. */
+		void expand(Board onBoard) {
+			untried = Bits.squares(onBoard.openSquares());
+			untriedCount = untried.length;
+			children = new Node[untriedCount];
+		}
+
+		Node bestChild() {
+			double logVisits = Math.log(visits);
+			Node best = null;
+			double bestValue = Double.NEGATIVE_INFINITY;
+			for (int i = 0; i < childCount; i++) {
+				Node child = children[i];
+				double value = child.score/child.visits + EXPLORATION*Math.sqrt(logVisits/child.visits);
+				if (value > bestValue) {
+					bestValue = value;
+					best = child;
+				}
+			}
+			return best;
+		}
+	}
+
+	/* Returns the square the given side (X or O) should play on the given board. The board is not touched. */
+	public int bestMove(Board onBoard, int side) {
+		return bestMove(onBoard, side, seeds);
+	}
+
+	/* As above, with each thread's generator split from the given one, in thread order, so that
+	 * with an iteration budget only (no time limit) a seeded source gives the same move every time. */
+	public int bestMove(Board onBoard, final int side, SplittableRandom seeds) {
+		long start = System.nanoTime();
+		Budget current = budget;
+		final long deadline = current.millis > 0 ? start + current.millis*1000000L : Long.MAX_VALUE;
+		final int iterations = current.iterations;
+		int threads = current.threads;
+
+		LinkedList<Future<Node>> helped = new LinkedList<Future<Node>>();
+		for (int t = 1; t < threads; t++) {
+			final Board copy = copyOf(onBoard);
+			final SplittableRandom random = seeds.split();
+			final int share = iterations/threads + (t < iterations%threads ? 1 : 0);
+			helped.add(Helpers.POOL.submit(new Callable<Node>() {
+				public Node call() {
+					return search(copy, side, share, deadline, random);
+				}
+			}));
+		}
+		Node[] roots = new Node[threads];
+		roots[0] = search(copyOf(onBoard), side, iterations/threads + (iterations%threads > 0 ? 1 : 0), deadline, seeds.split());
+		for (int t = 1; t < threads; t++) {
+			try {
+				roots[t] = helped.get(t-1).get();
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while searching", ex);
+			} catch (ExecutionException ex) {
+				throw new IllegalStateException("MCTS worker failed", ex.getCause());
+			}
+		}
+
+		// the most visited move over all the trees is the most reliable one:
+		int[] visits = new int[onBoard.squares()+1];
+		long searched = 0;
+		for (int t = 0; t < threads; t++) {
+			searched += roots[t].visits;
+			for (int i = 0; i < roots[t].childCount; i++)
+				visits[roots[t].children[i].move] += roots[t].children[i].visits;
+		}
+		int bestMove = -1;
+		for (int square = 1; square < visits.length; square++) {
+			if (onBoard.isOpen(square) && (bestMove < 0 || visits[square] > visits[bestMove]))
+				bestMove = square;
+		}
+
+		lastThreads = threads;
+		lastIterations = searched;
+		lastNanos = System.nanoTime() - start;
+		totalIterations += lastIterations;
+		totalNanos += lastNanos;
+		searches++;
+		return bestMove;
+	}
+
+	/* Grows one tree from the board's position for the given number of iterations or until the
+	 * deadline, and returns its root. */
+	private static Node search(Board board, int side, int iterations, long deadline, SplittableRandom random) {
+		Node root = new Node(0, 1-side);
+		int rootMoves = board.movesPlayed();
+		Node[] path = new Node[board.squares() - rootMoves + 1];
+		for (int i = 0; i < iterations; i++) {
+			if (i % CLOCK_CHECK_INTERVAL == 0 && i > 0 && deadline != Long.MAX_VALUE && System.nanoTime() >= deadline)
+				break;
+
+			// selection: follow UCT through fully expanded nodes
+			Node node = root;
+			int depth = 0;
+			path[depth++] = node;
+			while (!board.gameWon() && board.openCount() > 0) {
+				if (node.untried == null)
+					node.expand(board);
+				if (node.untriedCount > 0)
+					break;
+				node = node.bestChild();
+				board.play(node.move, node.mover);
+				path[depth++] = node;
+			}
+
+			// expansion: add one untried move
+			if (!board.gameWon() && board.openCount() > 0) {
+				int pick = random.nextInt(node.untriedCount);
+				int move = node.untried[pick];
+				node.untried[pick] = node.untried[--node.untriedCount];
+				Node child = new Node(move, 1-node.mover);
+				node.children[node.childCount++] = child;
+				board.play(move, child.mover);
+				node = child;
+				path[depth++] = node;
+			}
+
+			// simulation: random moves to the end of the game
+			int toMove = 1-node.mover;
+			while (!board.gameWon() && board.openCount() > 0) {
+				board.play(Bits.nth(board.openSquares(), random.nextInt(board.openCount())), toMove);
+				toMove = 1-toMove;
+			}
+			int winner = board.winner();
+
+			// backpropagation
+			for (int d = 0; d < depth; d++) {
+				Node n = path[d];
+				n.visits++;
+				if (winner < 0)
+					n.score += 0.5;
+				else if (winner == n.mover)
+					n.score += 1;
+			}
+			while (board.movesPlayed() > rootMoves)
+				board.undo();
+		}
+		return root;
+	}
+
+	/* Returns a new board with the same moves played. */
+	private static Board copyOf(Board onBoard) {
+		Board copy = new Board(onBoard.size(), onBoard.winLength());
+		for (int ply = 0; ply < onBoard.movesPlayed(); ply++) {
+			int square = onBoard.moveAt(ply);
+			copy.play(square, onBoard.sideAt(square));
+		}
+		return copy;
+	}
+
+	public long lastIterations() {
+		return lastIterations;
+	}
+
+	public long lastNanos() {
+		return lastNanos;
+	}
+
+	public long searches() {
+		return searches;
+	}
+
+	/* Summarizes the last and average per-move iteration counts and latencies. */
+	public String report() {
+		if (searches == 0)
+			return "no searches yet";
+		return "last move: " + lastIterations + " iterations in " + lastNanos/1000 + "us; average over " + searches
+				+ " moves: " + totalIterations/searches + " iterations in " + totalNanos/searches/1000 + "us on "
+				+ lastThreads + " thread" + (lastThreads == 1 ? "" : "s");
+	}
+
+	/* Plays MCTS against the perfect player on 3 x 3 and reports how it did. */
+	public static void main(String[] args) {
+		TicTacToe t = new TicTacToe("mcts", "perfect");
+		int losses = 0;
+		for (int i = 0; i < 50; i++) {
+			Game g = t.playGame();
+			if (!g.wasDraw() && !g.getWinner().playerType().equalsIgnoreCase("mcts"))
+				losses++;
+		}
+		System.out.println("MCTS lost " + losses + " of 50 games against perfect play; "
+				+ t.getPlayers().get(0).getMcts().report());
+	}
+}
@@ -0,0 +1,278 @@
+import java.lang.management.*;
+import java.util.concurrent.atomic.*;
+import javax.management.*;
+import jdk.jfr.*;
+
+/* Runtime instrumentation for long training and serving runs: counters of games and their
+ * outcomes, the strategy store's size, and latency histograms for decisions, rounds and store
+ * reorganization, readable over JMX (see MetricsMXBean), plus JFR events for the same three
+ * operations so a flight recording shows each one in its thread's timeline.
+ *
+ * Everything is off unless the JVM is started with -Dtictactoe.metrics=true. ENABLED is a
+ * constant, so callers guard their instrumentation with it and the JIT drops the guarded code
+ * entirely when it is false. Counters are LongAdders, so parallel training threads recording at
+ * once do not contend. */
+public final class Metrics implements MetricsMXBean {
+	public static final boolean ENABLED = Boolean.getBoolean("tictactoe.metrics");
+	private static final Metrics INSTANCE = new Metrics();
+
+	private static final LongAdder gamesPlayed = new LongAdder();
+	private static final LongAdder firstMoverWins = new LongAdder();
+	private static final LongAdder secondMoverWins = new LongAdder();
+	private static final LongAdder draws = new LongAdder();
+	private static volatile int storeSize;
+	private static final Histogram decisionNanos = new Histogram();
+	private static final Histogram roundNanos = new Histogram();
+	private static final Histogram reorganizeNanos = new Histogram();
+
+	static {
+		if (ENABLED) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName("tictactoe:type=Metrics"));
+			} catch (JMException ex) {
+				System.err.println("Could not register the metrics MBean: " + ex);
+			}
+		}
+	}
+
+	private Metrics() {
+	}
+
+	/* Records a computer player's decision, timed from the given start, and commits its event
+	 * (which must have been begun at the same time). */
+	static void decided(DecisionEvent event, long startNanos, Player p, int square, int strategies) {
+		decisionNanos.record(System.nanoTime() - startNanos);
+		event.end();
+		if (event.shouldCommit()) {
+			event.player = p.playerName();
+			event.square = square;
+			event.strategies = strategies;
+			event.commit();
+		}
+	}
+
+	/* Records a finished game, timed from the given start, and commits its event. */
+	static void roundPlayed(RoundEvent event, long startNanos, Game game, Board board) {
+		roundNanos.record(System.nanoTime() - startNanos);
+		gamesPlayed.increment();
+		String outcome;
+		if (game.wasDraw()) {
+			draws.increment();
+			outcome = "draw";
+		}
+		else if (board.sideAt(board.moveAt(0)) == Board.sideOf(game.getWinner().playerName())) {
+			firstMoverWins.increment();
+			outcome = game.getWinner().playerName() + " (first mover) won";
+		}
+		else {
+			secondMoverWins.increment();
+			outcome = game.getWinner().playerName() + " (second mover) won";
+		}
+		event.end();
+		if (event.shouldCommit()) {
+			event.moves = board.movesPlayed();
+			event.outcome = outcome;
+			event.commit();
+		}
+	}
+
+	/* Records a reorganization of the strategy store, timed from the given start, and commits its event. */
+	static void reorganized(ReorganizeEvent event, long startNanos, int stored, int size) {
+		reorganizeNanos.record(System.nanoTime() - startNanos);
+		storeSize = size;
+		event.end();
+		if (event.shouldCommit()) {
+			event.stored = stored;
+			event.storeSize = size;
+			event.commit();
+		}
+	}
+
+	/* Returns the registered MBean, e.g. to read the metrics in-process. */
+	public static MetricsMXBean get() {
+		return INSTANCE;
+	}
+
+	public long getGamesPlayed() {
+		return gamesPlayed.sum();
+	}
+
+	public long getFirstMoverWins() {
+		return firstMoverWins.sum();
+	}
+
+	public long getSecondMoverWins() {
+		return secondMoverWins.sum();
+	}
+
+	public long getDraws() {
+		return draws.sum();
+	}
+
+	public double getFirstMoverWinRate() {
+		return rate(firstMoverWins);
+	}
+
+	public double getSecondMoverWinRate() {
+		return rate(secondMoverWins);
+	}
+
+	public double getDrawRate() {
+		return rate(draws);
+	}
+
+	private static double rate(LongAdder outcomes) {
+		long games = gamesPlayed.sum();
+		return games == 0 ? 0.0 : (double) outcomes.sum() / games;
+	}
+
+	public int getStrategyStoreSize() {
+		return storeSize;
+	}
+
+	public long getDecisions() {
+		return decisionNanos.count();
+	}
+
+	public long getDecisionLatencyP50() {
+		return decisionNanos.percentile(0.50);
+	}
+
+	public long getDecisionLatencyP99() {
+		return decisionNanos.percentile(0.99);
+	}
+
+	public long getDecisionLatencyMax() {
+		return decisionNanos.max();
+	}
+
+	public long[] getDecisionLatencyHistogram() {
+		return decisionNanos.counts();
+	}
+
+	public long getRoundLatencyP50() {
+		return roundNanos.percentile(0.50);
+	}
+
+	public long getRoundLatencyP99() {
+		return roundNanos.percentile(0.99);
+	}
+
+	public long getReorganizeLatencyP50() {
+		return reorganizeNanos.percentile(0.50);
+	}
+
+	public long getReorganizeLatencyP99() {
+		return reorganizeNanos.percentile(0.99);
+	}
+
+	public void reset() {
+		gamesPlayed.reset();
+		firstMoverWins.reset();
+		secondMoverWins.reset();
+		draws.reset();
+		decisionNanos.reset();
+		roundNanos.reset();
+		reorganizeNanos.reset();
+	}
+
+	public String toString() {
+		return getGamesPlayed() + " games (first mover won " + getFirstMoverWins() + ", second mover won "
+				+ getSecondMoverWins() + ", " + getDraws() + " drawn); " + getDecisions() + " decisions, p50 "
+				+ getDecisionLatencyP50() + "ns, p99 " + getDecisionLatencyP99() + "ns; store holds "
+				+ getStrategyStoreSize() + " strategies";
+	}
+
+	/* Counts of latencies by power of 2: bucket i holds those under 2^i ns and at least 2^(i-1). */
+	private static final class Histogram {
+		private final LongAdder[] buckets = new LongAdder[64];
+		private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+		Histogram() {
+			for (int i = 0; i < buckets.length; i++)
+				buckets[i] = new LongAdder();
+		}
+
+		void record(long nanos) {
+			buckets[Math.min(63, 64 - Long.numberOfLeadingZeros(nanos))].increment();
+			max.accumulate(nanos);
+		}
+
+		long[] counts() {
+			long[] counts = new long[buckets.length];
+			for (int i = 0; i < buckets.length; i++)
+				counts[i] = buckets[i].sum();
+			return counts;
+		}
+
+		long count() {
+			long count = 0;
+			for (int i = 0; i < buckets.length; i++)
+				count += buckets[i].sum();
+			return count;
+		}
+
+		/* Returns the upper bound of the bucket holding the given fraction of the recorded latencies. */
+		long percentile(double fraction) {
+			long[] counts = counts();
+			long total = 0;
+			for (int i = 0; i < counts.length; i++)
+				total += counts[i];
+			if (total == 0)
+				return 0;
+			long target = (long) Math.ceil(fraction * total);
+			long seen = 0;
+			for (int i = 0; i < counts.length; i++) {
+				seen += counts[i];
+				if (seen >= target)
+					return i == 0 ? 0 : i == 63 ? Long.MAX_VALUE : 1L << i;
+			}
+			return Long.MAX_VALUE;
+		}
+
+		long max() {
+			return max.get();
+		}
+
+		void reset() {
+			for (int i = 0; i < buckets.length; i++)
+				buckets[i].reset();
+			max.reset();
+		}
+	}
+
+	@Name("tictactoe.Decision")
+	@Label("Computer Decision")
+	@Category("TicTacToe")
+	@Description("A computer player choosing a move from its known strategies")
+	static final class DecisionEvent extends jdk.jfr.Event {
+		@Label("Player")
+		String player;
+		@Label("Square")
+		int square;
+		@Label("Known Strategies")
+		int strategies;
+	}
+
+	@Name("tictactoe.Round")
+	@Label("Game Round")
+	@Category("TicTacToe")
+	@Description("One game played from the empty board to a win or draw")
+	static final class RoundEvent extends jdk.jfr.Event {
+		@Label("Moves")
+		int moves;
+		@Label("Outcome")
+		String outcome;
+	}
+
+	@Name("tictactoe.Reorganize")
+	@Label("Reorganize Strategies")
+	@Category("TicTacToe")
+	@Description("Pruning the strategy store after new strategies were stored")
+	static final class ReorganizeEvent extends jdk.jfr.Event {
+		@Label("Strategies Stored")
+		int stored;
+		@Label("Store Size")
+		int storeSize;
+	}
+}
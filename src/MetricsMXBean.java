@@ -0,0 +1,45 @@
+/* The management interface of Metrics, registered with the platform MBean server as
+ * "tictactoe:type=Metrics" when metrics are enabled (see Metrics). Latencies are in nanoseconds;
+ * percentiles are read off log2 histograms, so they are upper bounds within a factor of 2. */
+public interface MetricsMXBean {
+
+	long getGamesPlayed();
+
+	long getFirstMoverWins();
+
+	long getSecondMoverWins();
+
+	long getDraws();
+
+	/* The fractions of games won by the side moving first, won by the side moving second, and drawn. */
+	double getFirstMoverWinRate();
+
+	double getSecondMoverWinRate();
+
+	double getDrawRate();
+
+	/* The size of the strategy store most recently reorganized. */
+	int getStrategyStoreSize();
+
+	long getDecisions();
+
+	long getDecisionLatencyP50();
+
+	long getDecisionLatencyP99();
+
+	long getDecisionLatencyMax();
+
+	/* Decision counts per latency bucket: entry i counts decisions taking under 2^i ns (and at least 2^(i-1)). */
+	long[] getDecisionLatencyHistogram();
+
+	long getRoundLatencyP50();
+
+	long getRoundLatencyP99();
+
+	long getReorganizeLatencyP50();
+
+	long getReorganizeLatencyP99();
+
+	/* Zeroes every counter and histogram. */
+	void reset();
+}
@@ -0,0 +1,10 @@
+/* Where a human player's moves come from: the console (ConsoleMoveSource), a network session
+ * (GameServer), or anything else that can pick a square. Implementations must only return open
+ * squares, re-asking in a loop on bad input, and may block until the move arrives; a source that
+ * can no longer get moves (e.g. its connection closed) throws an unchecked exception, which ends
+ * the game being played. */
+public interface MoveSource {
+
+	/* Returns the open square the given player wants to play on the given board. */
+	int chooseMove(Player p, Board onBoard);
+}
@@ -0,0 +1,143 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+/* Splits computer vs. computer self-play across several worker threads. Each worker is its own
+ * TicTacToe with a private copy of the strategies, so the games never share mutable state.
+ * Every gamesPerMerge games the workers stop, what each of them learned is merged into the
+ * shared knowledge (duplicates combine their wins and losses, as in addOrAugment), and every
+ * worker starts the next round from a fresh copy of the merged result. */
+public class ParallelTrainer {
+	private final int workerCount;
+	private final int gamesPerMerge;
+	private final TicTacToe knowledge;
+	// ^ never plays itself; only holds the merged strategies
+	private final TicTacToe[] workers;
+	private long gamesPlayed;
+
+	public ParallelTrainer(int workerCount, int gamesPerMerge) {
+		this(workerCount, gamesPerMerge, 3, 3);
+	}
+
+	public ParallelTrainer(int workerCount, int gamesPerMerge, int boardSize, int winLength) {
+		this(workerCount, gamesPerMerge, boardSize, winLength, new SplittableRandom().nextLong());
+	}
+
+	/* As above, with every worker's random source split from one seeded by the given seed, in
+	 * worker order. Each worker always plays the same share of games and the merges happen in
+	 * worker order, so training with the same seed, workers and games gives the same strategies,
+	 * however the threads are scheduled. */
+	public ParallelTrainer(int workerCount, int gamesPerMerge, int boardSize, int winLength, long seed) {
+		if (workerCount < 1 || gamesPerMerge < 1)
+			throw new IllegalArgumentException("Need at least one worker and one game per merge.");
+		this.workerCount = workerCount;
+		this.gamesPerMerge = gamesPerMerge;
+		knowledge = new TicTacToe("computer", "computer", boardSize, winLength);
+		workers = new TicTacToe[workerCount];
+		SplittableRandom master = new SplittableRandom(seed);
+		for (int i = 0; i < workerCount; i++) {
+			workers[i] = new TicTacToe("computer", "computer", boardSize, winLength);
+			workers[i].setRandom(master.split());
+		}
+	}
+
+	/* Plays the given number of games in total, spread evenly over the workers,
+	 * and returns the merged strategies. */
+	public LinkedList<Strategy> train(long totalGames) throws InterruptedException {
+		ExecutorService pool = Executors.newFixedThreadPool(workerCount);
+		try {
+			long remaining = totalGames;
+			while (remaining > 0) {
+				long thisRound = Math.min(remaining, (long) gamesPerMerge * workerCount);
+				playRound(pool, thisRound);
+				remaining -= thisRound;
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+		return knowledge.winningStrats().toList();
+	}
+
+	/* Hands every worker a copy of the merged strategies, lets them all play their share of
+	 * the given number of games, then merges what they learned back in worker order. */
+	private void playRound(ExecutorService pool, long games) throws InterruptedException {
+		LinkedList<Callable<Void>> tasks = new LinkedList<Callable<Void>>();
+		LinkedList<IdentityHashMap<Strategy, int[]>> baselines = new LinkedList<IdentityHashMap<Strategy, int[]>>();
+
+		for (int i = 0; i < workerCount; i++) {
+			final TicTacToe worker = workers[i];
+			final long share = games/workerCount + (i < games%workerCount ? 1 : 0);
+			List<Strategy> copy = knowledge.winningStratsCopy();
+			IdentityHashMap<Strategy, int[]> baseline = new IdentityHashMap<Strategy, int[]>();
+			for (Strategy s : copy)
+				baseline.put(s, new int[] {s.getWins(), s.getLosses()});
+			worker.setWinningStrats(copy);
+			baselines.add(baseline);
+
+			tasks.add(new Callable<Void>() {
+				public Void call() {
+					for (long g = 0; g < share; g++)
+						worker.playGame();
+					return null;
+				}
+			});
+		}
+
+		List<Future<Void>> results = pool.invokeAll(tasks);
+		for (int i = 0; i < results.size(); i++) {
+			try {
+				results.get(i).get();
+			} catch (ExecutionException ex) {
+				throw new IllegalStateException("Training worker " + i + " failed", ex.getCause());
+			}
+		}
+
+		for (int i = 0; i < workerCount; i++)
+			knowledge.mergeStrats(learnedSince(workers[i].winningStrats(), baselines.get(i)));
+		gamesPlayed += games;
+	}
+
+	/* Returns only what a worker learned during the last round: strategies it discovered keep
+	 * their whole counts, and strategies it was handed carry just the wins and losses added since. */
+	private List<Strategy> learnedSince(StrategyStore strats, IdentityHashMap<Strategy, int[]> baseline) {
+		ArrayList<Strategy> learned = new ArrayList<Strategy>();
+
+		for (int i = 0; i < strats.size(); i++) {
+			Strategy s = strats.get(i);
+			int[] before = baseline.get(s);
+			if (before == null)
+				learned.add(s);
+			else if (s.getWins() != before[0] || s.getLosses() != before[1]) {
+				Strategy delta = s.clone();
+				delta.addCounts(-before[0], -before[1]);
+				learned.add(delta);
+			}
+		}
+		return learned;
+	}
+
+	public LinkedList<Strategy> winningStrats() {
+		return knowledge.winningStrats().toList();
+	}
+
+	public long gamesPlayed() {
+		return gamesPlayed;
+	}
+
+	/* Usage: ParallelTrainer [games] [workers] [gamesPerMerge] [seed] */
+	public static void main(String[] args) throws InterruptedException {
+		long games = args.length > 0 ? Long.parseLong(args[0]) : 100000;
+		int workers = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		int perMerge = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+		long seed = args.length > 3 ? Long.parseLong(args[3]) : new SplittableRandom().nextLong();
+
+		ParallelTrainer trainer = new ParallelTrainer(workers, perMerge, 3, 3, seed);
+		long start = System.nanoTime();
+		LinkedList<Strategy> learned = trainer.train(games);
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		System.out.println(games + " games on " + workers + " workers in " + String.format("%.2f", seconds)
+				+ "s (" + String.format("%.0f", games/seconds) + " games/s, seed " + seed + ")");
+		for (int i = 0; i < Math.min(10, learned.size()); i++)
+			System.out.println(learned.get(i));
+	}
+}
@@ -1,38 +1,82 @@
+import java.io.*;
 import java.util.*;
 
 public class Player {
 	private String playerName; // "X" or "O"
-	private String playerType; // "human" or "computer"
+	private String playerType; // "human", "computer", "perfect", "table", "mcts" or "learner"
 	private TicTacToe context;
-	private LinkedList<Integer> turnsTaken;
+	private int[] turnsTaken;
+	private int turnCount;
+	// ^ the squares played this game, in order, in the first turnCount entries
+	private long[] movesMask;
+	// ^ the same squares as turnsTaken, one bit per square
+
+	// instance variables for human players:
+	private MoveSource moveSource = ConsoleMoveSource.INSTANCE;
 
 	// instance variables for computer players:
-	private LinkedList<Strategy> allWinningStrats;
+	private RankedStrategies allWinningStrats;
+	// ^ this context's strategies, or the snapshot of shared ones this game is played against
 	private Strategy currentStrat;
 	private boolean stratsAvailable;
+	private final Frontier viable = new Frontier();
+	// ^ the strategies with none of the opponent's squares this game (the ones this player could still complete)
+	private final Frontier theirViable = new Frontier();
+	// ^ the strategies with none of this player's squares (the ones the opponent could still complete)
+
+	// instance variables for perfect (searching) players:
+	private AlphaBetaSearch search;
+
+	// instance variables for table players:
+	private SolutionTable solution;
+
+	// instance variables for Monte Carlo tree search players:
+	private MctsSearch mcts;
+
+	// instance variables for learner players:
+	private TdValueTable values;
+	// ^ shared with any other learner in the same context
+	private int lastAfterstate;
+	// ^ the index (see TdValueTable.index) of the position this player last moved into this game, or -1
 
-	private static Random gen = new Random();
 	private final Strategy NULL_STRAT = new Strategy();
 
 	public Player(String name, String type, TicTacToe context) {
 		if (!validPlayer(name, type))
-			System.out.println("ERROR: Please enter one of X or O for the player name, and human or computer for player type.");
+			System.out.println("ERROR: Please enter one of X or O for the player name, and human, computer, perfect, table, mcts or learner for player type.");
 		else {
 			this.context = context;
 			playerName = name;
 			playerType = type;
-			turnsTaken = new LinkedList<Integer>();
+			BoardGeometry geometry = BoardGeometry.of(context.boardSize(), context.winLength());
+			turnsTaken = new int[geometry.squares()];
+			movesMask = new long[geometry.words()];
 
 			if (playerType.equalsIgnoreCase("computer"))
 				computerInit();
+			else if (playerType.equalsIgnoreCase("perfect"))
+				search = new AlphaBetaSearch(context.boardSize(), context.winLength());
+			else if (playerType.equalsIgnoreCase("table")) {
+				try {
+					solution = SolutionTable.forBoard(context.boardSize(), context.winLength());
+				} catch (IOException ex) {
+					throw new UncheckedIOException("Could not load the solution table", ex);
+				}
+			}
+			else if (playerType.equalsIgnoreCase("mcts"))
+				mcts = new MctsSearch(context.mctsBudget());
+			else if (playerType.equalsIgnoreCase("learner"))
+				values = context.valueTable();
 		}
 	}
 
 	/* Sets/resets instance variables for the computer player: */
 	public void computerInit() {
-		allWinningStrats = context.winningStrats();
+		allWinningStrats = context.knowledge();
+		viable.reset(allWinningStrats.size());
+		theirViable.reset(allWinningStrats.size());
 		if (allWinningStrats.size() > 0) {
-			currentStrat = allWinningStrats.get(0);
+			currentStrat = allWinningStrats.top();
 			stratsAvailable = true;
 		}
 		else {
@@ -42,7 +86,9 @@ public class Player {
 	}
 
 	public void reset() {
-		turnsTaken.clear();
+		turnCount = 0;
+		Bits.clearAll(movesMask);
+		lastAfterstate = -1;
 		if (playerType.equalsIgnoreCase("computer"))
 			computerInit();
 	}
@@ -60,35 +106,84 @@ public class Player {
 		
 		if (playerType.equalsIgnoreCase("human"))
 			toPlay = humanChooseMove(onBoard);
+		else if (playerType.equalsIgnoreCase("perfect"))
+			toPlay = search.bestMove(onBoard, Board.sideOf(playerName));
+		else if (playerType.equalsIgnoreCase("table"))
+			toPlay = solution.bestMove(onBoard, Board.sideOf(playerName));
+		else if (playerType.equalsIgnoreCase("mcts"))
+			toPlay = mcts.bestMove(onBoard, Board.sideOf(playerName), context.random());
+		else if (playerType.equalsIgnoreCase("learner"))
+			toPlay = learnerChooseMove(onBoard);
 		else toPlay = computerChooseMove(onBoard);
 		
-		turnsTaken.add(toPlay);
+		turnsTaken[turnCount++] = toPlay;
+		Bits.set(movesMask, toPlay);
 		return toPlay;
 	}
 	
-	/* Lets a human player choose the open square they want to play on the given board. */
+	/* Lets a human player choose the open square they want to play on the given board,
+	 * through their move source (the console unless set otherwise). */
 	public int humanChooseMove(Board onBoard) {
-		Scanner getInput = new Scanner(System.in);
-		System.out.print("What square would you like to play?  Choose one of: " + onBoard.allOpenSquares());
-		try {
-			int toPlay = Integer.parseInt(getInput.next());
-			if (!onBoard.allOpenSquares().contains(toPlay)) {
-				System.out.println("ERROR: Please choose an open square.");
-				return humanChooseMove(onBoard);
-			}
-			else return toPlay;
-		} catch (NumberFormatException ex) {
-			System.out.println("ERROR: Please enter an integer contained in the open squares.");
-			return humanChooseMove(onBoard);
-		}
+		return moveSource.chooseMove(this, onBoard);
 	}
 	
+	/* A learner picks its move from the value table, then learns from it: the position it moved
+	 * into last time is pulled towards the value of the one it is moving into now. A move that
+	 * ends the game is learned from in gameEnded() instead, once the result is known. */
+	private int learnerChooseMove(Board onBoard) {
+		int side = Board.sideOf(playerName);
+		int toPlay = values.chooseMove(onBoard, side, context.random());
+		onBoard.play(toPlay, side);
+		boolean over = onBoard.gameWon() || onBoard.openCount() == 0;
+		int afterstate = values.index(onBoard, side);
+		onBoard.undo();
+
+		if (!over) {
+			if (lastAfterstate >= 0)
+				values.update(lastAfterstate, values.value(afterstate));
+			lastAfterstate = afterstate;
+		}
+		return toPlay;
+	}
+
+	/* Called by the Game once it is over: a learner pulls the value of the last position it moved
+	 * into towards the result (1 for a win, 1/2 for a draw, 0 for a loss). */
+	public void gameEnded(Game g) {
+		if (values != null && lastAfterstate >= 0) {
+			float result = g.wasDraw() ? 0.5f : g.getWinner() == this ? 1 : 0;
+			values.update(lastAfterstate, result);
+			lastAfterstate = -1;
+		}
+	}
+
 	/* The computer chooses the open square it wants to play on the given board by:
+	 * 0) taking a win, or blocking one, if the board's line counters show one;
 	 * 1) trying to play a known winning strategy;
 	 * 1b) trying to sabotage its opponent's strategy while doing so;
-	 * 2) failing that, trying to sabotage its opponent's strategy regardless of the success of its own. */
+	 * 2) failing that, trying to sabotage its opponent's strategy regardless of the success of its own.
+	 * Everything it looks at is a mask or an array, so (with metrics off) choosing allocates nothing;
+	 * SmokeTimer --check-alloc verifies this. */
 	public int computerChooseMove(Board onBoard) {
-		if (currentStrat.isValid(onBoard, turnsTaken)) {
+		if (!Metrics.ENABLED)
+			return chooseByStrats(onBoard);
+
+		Metrics.DecisionEvent event = new Metrics.DecisionEvent();
+		event.begin();
+		long start = System.nanoTime();
+		int square = chooseByStrats(onBoard);
+		Metrics.decided(event, start, this, square, allWinningStrats.size());
+		return square;
+	}
+
+	private int chooseByStrats(Board onBoard) {
+		int side = Board.sideOf(playerName);
+		int forced = onBoard.winningSquare(side);
+		if (forced < 0)
+			forced = onBoard.blockingSquare(side);
+		if (forced > 0)
+			return forced;
+
+		if (currentStrat.isValid(onBoard, movesMask)) {
 			return attemptTwoBirds(onBoard);
 		}
 		
@@ -127,25 +222,25 @@ public class Player {
 		}
 	}
 	
-	/* Plays a "stupid" computer move, i.e. selects at random from the given list of open squares. */
+	/* Plays a "stupid" computer move, i.e. selects at random from the open squares
+	 * (drawing from the context's random source, so seeded games repeat exactly). */
 	private int playStupid(Board onBoard) {
-		LinkedList<Integer> validMoves = onBoard.allOpenSquares();
-	    int index = gen.nextInt(validMoves.size());
-	    return validMoves.get(index);
+		return Bits.nth(onBoard.openSquares(), context.random().nextInt(onBoard.openCount()));
 	}
 
 	/* Determines whether or not any of the known winning strategies can be completed on the given board,
-	 * taking into account the turns the player has already played. */
+	 * taking into account the turns the player has already played. Only the strategies left in this
+	 * player's frontier can be, so only those are looked at, best first. */
 	private boolean validStratExists(Board onBoard) {
 		if (!stratsAvailable)
 			return false;
 
 		else {
-			for (int i = 0; i < allWinningStrats.size(); i++) {
-				if (allWinningStrats.get(i).isValid(onBoard, turnsTaken)) {
-					currentStrat = allWinningStrats.get(i);
-					return true;
-				}
+			Player opponent = otherPlayer();
+			Strategy found = viable.firstValid(allWinningStrats, opponent.turnsTaken, opponent.turnCount, onBoard, movesMask);
+			if (found != null) {
+				currentStrat = found;
+				return true;
 			}
 			
 			stratsAvailable = false;
@@ -154,33 +249,110 @@ public class Player {
 	}
 	
 	/* Determines whether or not a player seems to be playing (i.e. has partially completed) any
-	 * of the known winning strategies on the given board. */
+	 * of the known winning strategies on the given board. p is always the opponent, whose
+	 * frontier excludes every strategy through one of this player's squares. */
 	private Strategy isPlayingWinningStrat(Board onBoard, Player p) {
-		LinkedList<Integer> theirMoves = p.getMoves();
-
-		if (theirMoves.size() == 0)
+		if (p.turnsTaken() == 0)
 			return NULL_STRAT;
 
-		for (int i = 0; i < allWinningStrats.size(); i++) {
-			if (allWinningStrats.get(i).isValid(onBoard, otherPlayer().getMoves()))
-				return allWinningStrats.get(i);
+		Strategy found = theirViable.firstValid(allWinningStrats, turnsTaken, turnCount, onBoard, p.getMovesMask());
+		return found != null ? found : NULL_STRAT;
+	}
+
+	/* The strategies one side could still complete this game, as a bitset over their ranks, narrowed
+	 * by the other side's squares through the store's inverted index (RankedStrategies.containing):
+	 * no strategy through one of them can be completed any more. Words are narrowed lazily, only
+	 * when a search reaches them, so a search that stops at a good strategy early costs no more than
+	 * the words up to it, and each word only ever catches up on the turns played since it last did. */
+	private static final class Frontier {
+		private long[] words = new long[0];
+		private int[] caughtUp = new int[0];
+		// ^ how many of the other side's turns each word has been narrowed by
+		private int started;
+		// ^ how many words have been set up this game; the rest still hold a previous game's bits
+		private int ranks;
+
+		void reset(int ranks) {
+			this.ranks = ranks;
+			started = 0;
+			int count = (ranks + 63) >>> 6;
+			if (words.length < count) {
+				words = new long[count];
+				caughtUp = new int[count];
+			}
 		}
 
-		return NULL_STRAT;
+		/* Returns the best-ranked strategy left in the frontier, once narrowed by the given turns
+		 * of the other side, that is valid for the given moves; or null if there is none. */
+		Strategy firstValid(RankedStrategies strats, int[] turns, int turnCount, Board onBoard, long[] moves) {
+			int count = (ranks + 63) >>> 6;
+			for (int w = 0; w < count; w++) {
+				if (w == started) {
+					int left = ranks - (w << 6);
+					words[w] = left >= 64 ? -1L : (1L << left) - 1;
+					caughtUp[w] = 0;
+					started++;
+				}
+				for (int t = caughtUp[w]; t < turnCount; t++) {
+					long[] through = strats.containing(turns[t]);
+					if (w < through.length)
+						words[w] &= ~through[w];
+				}
+				caughtUp[w] = turnCount;
+
+				for (long remaining = words[w]; remaining != 0; remaining &= remaining-1) {
+					Strategy s = strats.get((w << 6) + Long.numberOfTrailingZeros(remaining));
+					if (s.isValid(onBoard, moves))
+						return s;
+				}
+			}
+			return null;
+		}
 	}
-	
+
 	/* *
 	 * =============================================
 	 * GETTERS, SETTERS, ETC
 	 * =============================================
 	 * */
 
+	/* Returns the search behind a perfect player (null for other player types), which
+	 * reports the node count and time taken for each move. */
+	public AlphaBetaSearch getSearch() {
+		return search;
+	}
+
+	/* Returns the search behind an mcts player (null for other player types). */
+	public MctsSearch getMcts() {
+		return mcts;
+	}
+
+	/* Returns the value table behind a learner player (null for other player types). */
+	public TdValueTable getValueTable() {
+		return values;
+	}
+
+	/* Makes a learner player use the given value table; does nothing for other player types. */
+	void setValueTable(TdValueTable table) {
+		if (values != null)
+			values = table;
+	}
+
+	public MoveSource getMoveSource() {
+		return moveSource;
+	}
+
+	/* Makes a human player take their moves from the given source. */
+	public void setMoveSource(MoveSource source) {
+		moveSource = source;
+	}
+
 	public Strategy getCurrentStrat() {
 		return currentStrat;
 	}
 
 	public int turnsTaken() {
-		return turnsTaken.size();
+		return turnCount;
 	}
 	
 	public String playerName() {
@@ -191,8 +363,17 @@ public class Player {
 		return playerType;
 	}
 
+	/* Returns a new list of the squares this player has taken this game, in the order they were played. */
 	public LinkedList<Integer> getMoves() {
-		return turnsTaken;
+		LinkedList<Integer> moves = new LinkedList<Integer>();
+		for (int i = 0; i < turnCount; i++)
+			moves.add(turnsTaken[i]);
+		return moves;
+	}
+
+	/* Returns the squares this player has taken this game as a mask. The array is shared, so do not modify it. */
+	public long[] getMovesMask() {
+		return movesMask;
 	}
 
 	public String toString() {
@@ -211,7 +392,9 @@ public class Player {
 
 	private boolean validPlayer(String name, String type) {
 		if ((!name.equals("X") && !name.equals("O")) ||
-				(!type.equalsIgnoreCase("human") && !type.equalsIgnoreCase("computer")))
+				(!type.equalsIgnoreCase("human") && !type.equalsIgnoreCase("computer") && !type.equalsIgnoreCase("perfect") &&
+				!type.equalsIgnoreCase("table") && !type.equalsIgnoreCase("mcts") &&
+				!type.equalsIgnoreCase("learner")))
 			return false;
 		return true;
 	}
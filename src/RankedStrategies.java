@@ -0,0 +1,17 @@
+/* Strategies in descending order of score, as computer players walk them: either a TicTacToe's
+ * own StrategyStore or an immutable KnowledgeSnapshot of a knowledge base shared between games. */
+public interface RankedStrategies {
+
+	int size();
+
+	/* Returns the strategy at the given rank (0 being the best). */
+	Strategy get(int rank);
+
+	/* Returns the best-scoring strategy, or null if there are none. */
+	Strategy top();
+
+	/* Returns the ranks of the strategies containing the given square as a bitset: bit r of word
+	 * r/64 is set if the strategy at rank r contains it. Words past the end count as empty.
+	 * The array is shared, so do not modify it. */
+	long[] containing(int square);
+}
@@ -0,0 +1,187 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+/* A knowledge base shared by many concurrent games (e.g. the sessions of a GameServer). Games
+ * read it through immutable, versioned KnowledgeSnapshots, which need no locking however many
+ * games read at once; a computer player takes the newest snapshot when its game starts and plays
+ * the whole game against it. Games do not change the knowledge themselves: they submit what
+ * happened, and a single learner thread applies the submissions to the only mutable copy, in
+ * the order they arrived, with the same learning TicTacToe.playGame uses - including charging a
+ * loss to the strategy the loser was attempting - then publishes a new snapshot.
+ *
+ * Publishing copies the whole store, so the learner applies whatever has queued up (up to
+ * PUBLISH_BATCH games) before publishing once for all of it.
+ *
+ * If learning throws, the learner stops and records why; from then on submitting, syncing and
+ * closing throw an IllegalStateException caused by the original failure, and syncs already
+ * waiting are released to throw it too. */
+public class SharedKnowledge implements AutoCloseable {
+	private static final int PUBLISH_BATCH = 256;
+
+	private final TicTacToe learner;
+	// ^ never plays; holds the mutable store and is only touched by the learner thread
+	private final LinkedBlockingQueue<Outcome> submitted = new LinkedBlockingQueue<Outcome>();
+	private final Thread learnerThread;
+	private volatile KnowledgeSnapshot current = KnowledgeSnapshot.EMPTY;
+	private volatile boolean closed;
+	private volatile RuntimeException failure;
+	// ^ set, under the submitted lock, if the learner thread died learning
+
+	/* What one game taught, or (with only synced set) a request to be told once everything before it is published. */
+	private static final class Outcome {
+		final LinkedList<Integer> winningMoves;
+		final LinkedList<Integer> drawTurns1;
+		final LinkedList<Integer> drawTurns2;
+		final Strategy lostWith;
+		final CountDownLatch synced;
+
+		Outcome(LinkedList<Integer> winningMoves, LinkedList<Integer> drawTurns1, LinkedList<Integer> drawTurns2,
+				Strategy lostWith, CountDownLatch synced) {
+			this.winningMoves = winningMoves;
+			this.drawTurns1 = drawTurns1;
+			this.drawTurns2 = drawTurns2;
+			this.lostWith = lostWith;
+			this.synced = synced;
+		}
+	}
+
+	private static final Outcome STOP = new Outcome(null, null, null, null, null);
+
+	public SharedKnowledge(int boardSize, int winLength) {
+		learner = new TicTacToe("computer", "computer", boardSize, winLength);
+		learnerThread = new Thread(new Runnable() {
+			public void run() {
+				learn();
+			}
+		}, "knowledge-learner");
+		learnerThread.setDaemon(true);
+		learnerThread.start();
+	}
+
+	public int boardSize() {
+		return learner.boardSize();
+	}
+
+	public int winLength() {
+		return learner.winLength();
+	}
+
+	/* Returns the newest published snapshot. */
+	public KnowledgeSnapshot current() {
+		return current;
+	}
+
+	/* Queues a won game for learning: the winner's moves, and the strategy (from a snapshot) the
+	 * loser was attempting, if any, to be charged with the loss. */
+	public void submitWin(LinkedList<Integer> winningMoves, Strategy lostWith) {
+		submit(new Outcome(winningMoves, null, null, lostWith, null));
+	}
+
+	/* Queues a drawn game for learning: both sides' moves. */
+	public void submitDraw(LinkedList<Integer> drawTurns1, LinkedList<Integer> drawTurns2) {
+		submit(new Outcome(null, drawTurns1, drawTurns2, null, null));
+	}
+
+	private void submit(Outcome outcome) {
+		synchronized (submitted) {
+			checkLearner();
+			if (closed)
+				throw new IllegalStateException("This knowledge base has been closed");
+			submitted.add(outcome);
+		}
+	}
+
+	/* Waits until everything submitted so far has been learned and published. */
+	public void sync() throws InterruptedException {
+		CountDownLatch synced = new CountDownLatch(1);
+		submit(new Outcome(null, null, null, null, synced));
+		synced.await();
+		checkLearner();
+	}
+
+	/* Learns what is still queued, publishes it, and stops the learner. If interrupted while
+	 * waiting for the learner, returns early with the interrupt status set; the learner still
+	 * finishes on its own. */
+	public void close() {
+		synchronized (submitted) {
+			if (closed)
+				return;
+			closed = true;
+			submitted.add(STOP);
+		}
+		try {
+			learnerThread.join();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			return;
+		}
+		checkLearner();
+	}
+
+	private void checkLearner() {
+		if (failure != null)
+			throw new IllegalStateException("The knowledge learner failed", failure);
+	}
+
+	/* The learner thread: applies submissions in order, publishing after each batch. */
+	private void learn() {
+		try {
+			while (true) {
+				Outcome next = submitted.take();
+				int applied = 0;
+				while (next != null) {
+					if (next == STOP) {
+						if (applied > 0)
+							publish();
+						return;
+					}
+					else if (next.synced != null) {
+						if (applied > 0)
+							publish();
+						applied = 0;
+						next.synced.countDown();
+					}
+					else {
+						apply(next);
+						applied++;
+					}
+					next = applied < PUBLISH_BATCH ? submitted.poll() : null;
+				}
+				if (applied > 0)
+					publish();
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		} catch (RuntimeException ex) {
+			fail(ex);
+		}
+	}
+
+	/* Records why the learner died, refuses further submissions, and releases every sync still
+	 * queued so its caller sees the failure instead of waiting forever. */
+	private void fail(RuntimeException ex) {
+		synchronized (submitted) {
+			failure = ex;
+			for (Outcome pending : submitted)
+				if (pending.synced != null)
+					pending.synced.countDown();
+			submitted.clear();
+		}
+	}
+
+	private void apply(Outcome outcome) {
+		if (outcome.winningMoves != null) {
+			if (outcome.lostWith != null) {
+				Strategy known = learner.winningStrats().find(outcome.lostWith);
+				if (known != null)
+					known.augmentLosses();
+			}
+			learner.learnWin(outcome.winningMoves);
+		}
+		else learner.learnDraw(outcome.drawTurns1, outcome.drawTurns2);
+	}
+
+	private void publish() {
+		current = KnowledgeSnapshot.of(learner.winningStrats(), current.version() + 1);
+	}
+}
@@ -0,0 +1,212 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/* The complete solution of a small board: the game-theoretic value and a best move for every
+ * legal position, one byte per position indexed by Board.ternaryIndex from the mover's point of
+ * view. generate() works it out by retrograde analysis: it finds every reachable position layer
+ * by layer (by number of moves played), then settles the layers from the last one back to the
+ * empty board, so every position's successors are known before the position itself.
+ *
+ * The table is written to a small binary file and read back through a read-only memory mapping,
+ * so loading costs no parsing and a move is one byte lookup. Tables are shared per file.
+ *
+ * File layout (big-endian): MAGIC, VERSION, board size, win length and entry count as ints,
+ * padded to HEADER_BYTES, then one entry per ternary index. */
+public class SolutionTable {
+	public static final int LOSS = 1;
+	public static final int DRAW = 2;
+	public static final int WIN = 3;
+	// ^ values for the side to move; 0 means the index is not a reachable position
+	private static final int MAGIC = 0x54545453; // "TTTS"
+	private static final int VERSION = 1;
+	private static final int HEADER_BYTES = 32;
+	private static final ConcurrentHashMap<Path, SolutionTable> LOADED = new ConcurrentHashMap<Path, SolutionTable>();
+
+	private final ByteBuffer entries;
+	private final BoardGeometry geometry;
+
+	private SolutionTable(ByteBuffer entries, BoardGeometry geometry) {
+		this.entries = entries;
+		this.geometry = geometry;
+	}
+
+	/* Returns the value (WIN, DRAW or LOSS) of the board's position for the given side, to move. */
+	public int value(Board onBoard, int side) {
+		return entries.get(HEADER_BYTES + onBoard.ternaryIndex(side)) & 3;
+	}
+
+	/* Returns a best square for the given side, to move, on the given board. */
+	public int bestMove(Board onBoard, int side) {
+		return (entries.get(HEADER_BYTES + onBoard.ternaryIndex(side)) >>> 2) & 0x1F;
+	}
+
+	public BoardGeometry geometry() {
+		return geometry;
+	}
+
+	/* Returns the table for the given board, mapping it from the default file - and generating
+	 * that file first if it does not exist yet. The directory defaults to the working directory
+	 * and can be set with the tictactoe.solutionDir system property. */
+	public static SolutionTable forBoard(int boardSize, int winLength) throws IOException {
+		Path file = Paths.get(System.getProperty("tictactoe.solutionDir", "."),
+				"solution-" + boardSize + "x" + boardSize + "-" + winLength + ".tbl").toAbsolutePath().normalize();
+		SolutionTable table = LOADED.get(file);
+		if (table != null)
+			return table;
+		synchronized (LOADED) {
+			if (!Files.exists(file))
+				write(generate(BoardGeometry.of(boardSize, winLength)), BoardGeometry.of(boardSize, winLength), file);
+			return load(file);
+		}
+	}
+
+	/* Memory-maps a table written by write(). */
+	public static SolutionTable load(Path file) throws IOException {
+		Path key = file.toAbsolutePath().normalize();
+		SolutionTable table = LOADED.get(key);
+		if (table != null)
+			return table;
+
+		MappedByteBuffer mapped;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		if (mapped.capacity() < HEADER_BYTES || mapped.getInt(0) != MAGIC)
+			throw new IOException(file + " is not a solution table");
+		if (mapped.getInt(4) != VERSION)
+			throw new IOException(file + " has solution table version " + mapped.getInt(4) + ", expected " + VERSION);
+		BoardGeometry geometry = BoardGeometry.of(mapped.getInt(8), mapped.getInt(12));
+		if (mapped.getInt(16) != geometry.ternaryIndexCount() || mapped.capacity() < HEADER_BYTES + mapped.getInt(16))
+			throw new IOException(file + " is truncated or has the wrong number of entries");
+
+		table = new SolutionTable(mapped, geometry);
+		SolutionTable raced = LOADED.putIfAbsent(key, table);
+		return raced != null ? raced : table;
+	}
+
+	/* Writes a generated table (see generate()) for the given board to the given file. */
+	public static void write(byte[] table, BoardGeometry geometry, Path file) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+		header.putInt(MAGIC).putInt(VERSION).putInt(geometry.size()).putInt(geometry.winLength()).putInt(table.length);
+		header.rewind();
+
+		Path partial = file.resolveSibling(file.getFileName() + ".part");
+		try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer body = ByteBuffer.wrap(table);
+			while (header.hasRemaining())
+				channel.write(header);
+			while (body.hasRemaining())
+				channel.write(body);
+		}
+		Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/* Solves the given board by retrograde analysis and returns one entry per ternary index:
+	 * the value for the side to move in the low 2 bits and a best move in the next 5. */
+	public static byte[] generate(BoardGeometry geometry) {
+		int squares = geometry.squares();
+		if (!geometry.hasTernaryIndex() || squares > 31)
+			throw new IllegalArgumentException("Solution tables only support boards of at most "
+					+ BoardGeometry.MAX_TERNARY_SQUARES + " squares");
+		int full = (int) ((1L << squares) - 1);
+		int[][] lineMasks = new int[squares+1][];
+		for (int square = 1; square <= squares; square++) {
+			int[] through = geometry.linesThrough(square);
+			lineMasks[square] = new int[through.length];
+			for (int i = 0; i < through.length; i++) {
+				int[] line = geometry.line(through[i]);
+				for (int j = 0; j < line.length; j++)
+					lineMasks[square][i] |= 1 << (line[j]-1);
+			}
+		}
+
+		// forwards: every reachable position, as (mover's squares) | (opponent's squares) << 32, by layer
+		byte[] table = new byte[geometry.ternaryIndexCount()];
+		long[][] layers = new long[squares+1][];
+		long[] current = {0L};
+		table[0] = -1; // marks reached until the entry is settled
+		for (int depth = 0; depth <= squares; depth++) {
+			layers[depth] = current;
+			long[] next = new long[16];
+			int nextCount = 0;
+			for (int i = 0; i < current.length; i++) {
+				int mine = (int) current[i];
+				int theirs = (int) (current[i] >>> 32);
+				for (int open = full & ~(mine | theirs); open != 0; open &= open-1) {
+					int square = Integer.numberOfTrailingZeros(open) + 1;
+					int played = mine | (1 << (square-1));
+					if (completesLine(played, lineMasks[square]) || (played | theirs) == full)
+						continue; // the game is over, so there is no position to store
+					int child = geometry.ternaryIndex(theirs, played);
+					if (table[child] == 0) {
+						table[child] = -1;
+						if (nextCount == next.length)
+							next = Arrays.copyOf(next, 2*nextCount);
+						next[nextCount++] = (theirs & 0xFFFFFFFFL) | ((long) played << 32);
+					}
+				}
+			}
+			current = Arrays.copyOf(next, nextCount);
+		}
+
+		// backwards: settle each layer from the values of the one after it
+		for (int depth = squares; depth >= 0; depth--) {
+			long[] layer = layers[depth];
+			for (int i = 0; i < layer.length; i++) {
+				int mine = (int) layer[i];
+				int theirs = (int) (layer[i] >>> 32);
+				int bestValue = 0;
+				int bestMove = 0;
+				for (int open = full & ~(mine | theirs); open != 0 && bestValue != WIN; open &= open-1) {
+					int square = Integer.numberOfTrailingZeros(open) + 1;
+					int played = mine | (1 << (square-1));
+					int value;
+					if (completesLine(played, lineMasks[square]))
+						value = WIN;
+					else if ((played | theirs) == full)
+						value = DRAW;
+					else value = WIN + LOSS - (table[geometry.ternaryIndex(theirs, played)] & 3);
+					// ^ the opponent's loss is our win and vice versa
+					if (value > bestValue) {
+						bestValue = value;
+						bestMove = square;
+					}
+				}
+				table[geometry.ternaryIndex(mine, theirs)] = (byte) (bestValue | (bestMove << 2));
+			}
+		}
+		return table;
+	}
+
+	private static boolean completesLine(int mask, int[] linesThroughLastMove) {
+		for (int i = 0; i < linesThroughLastMove.length; i++) {
+			if ((mask & linesThroughLastMove[i]) == linesThroughLastMove[i])
+				return true;
+		}
+		return false;
+	}
+
+	/* Usage: SolutionTable [size] [winLength] [file] - generates and writes a table. */
+	public static void main(String[] args) throws IOException {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+		int winLength = args.length > 1 ? Integer.parseInt(args[1]) : size;
+		Path file = Paths.get(args.length > 2 ? args[2] : "solution-" + size + "x" + size + "-" + winLength + ".tbl");
+		BoardGeometry geometry = BoardGeometry.of(size, winLength);
+
+		long start = System.nanoTime();
+		byte[] table = generate(geometry);
+		write(table, geometry, file);
+		int reachable = 0;
+		for (int i = 0; i < table.length; i++)
+			if (table[i] != 0)
+				reachable++;
+		System.out.println("Solved " + reachable + " positions in " + (System.nanoTime() - start)/1000000
+				+ "ms; the empty board is a " + new String[] {"?", "loss", "draw", "win"}[table[0] & 3]
+				+ " for the first player. Wrote " + file);
+	}
+}
\ No newline at end of file
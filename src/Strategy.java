@@ -2,13 +2,21 @@ import java.util.*;
 
 public class Strategy {
 	private LinkedList<Integer> strat;
+	private int[] order;
+	// ^ the same moves as strat, in play order, for allocation-free lookups
+	private long[] mask;
+	// ^ the same moves as a set, one bit per square (bit 0 is square #1), since strategies are order-independent
 	private boolean IS_NULL_STRAT;
 	private boolean isDrawStrat;
 	private int wins;
 	private int losses;
+	StrategyStore owner;
+	int rank;
+	// ^ the store holding this strategy (if any) and where it is ranked there, kept up to date by the store
 
 	public Strategy(LinkedList<Integer> toPlay, Boolean drawStrat) {
 		strat = toPlay;
+		movesChanged();
 		isDrawStrat = drawStrat;
 		IS_NULL_STRAT = false;
 		if (isDrawStrat) {
@@ -26,33 +34,41 @@ public class Strategy {
 		strat = new LinkedList<Integer>();
 		for (int i = 0; i < toPlay.length; i++)
 			strat.add(toPlay[i]);
+		movesChanged();
 		IS_NULL_STRAT = false;
 	}
 
 	/* Constructor for creating the null strat: */
 	public Strategy() {
+		order = new int[0];
+		mask = new long[0];
 		IS_NULL_STRAT = true;
 	}
 
+	/* Rebuilds order and mask from strat. */
+	private void movesChanged() {
+		order = new int[strat.size()];
+		for (int i = 0; i < order.length; i++)
+			order[i] = strat.get(i);
+		mask = Bits.of(strat);
+	}
+
 	/* Checks to see if a strategy is valid on a given board.  It takes the squares
 	 * already played as an argument because of the way computer players take their
 	 * turns - sometimes playing the strategy out of order in order to attempt sabotage, etc. -
 	 * so we cannot just start from a given index and check the remaining squares in the strat.
-	 * Instead we need to clone the strategy and filter out the moves already taken. Otherwise some
-	 * squares in the strategy will not be contained in the board's allOpenSquares(), having
-	 * already been played by the player calling isValid.
+	 * Instead every square in the strategy must either be open or already played by the player
+	 * calling isValid, and at least one of them must still be open.
 	 */
 	public boolean isValid(Board onBoard, LinkedList<Integer> turnsTaken) {
-		if (IS_NULL_STRAT || properlyContains(turnsTaken, this.strat))
+		return isValid(onBoard, Bits.of(turnsTaken));
+	}
+
+	/* As above, with the squares already played given as a mask (see Player.getMovesMask). */
+	public boolean isValid(Board onBoard, long[] turnsTaken) {
+		if (IS_NULL_STRAT || Bits.containsAll(turnsTaken, mask))
 			return false;
-		else {
-			Strategy movesRemaining = clone();
-			movesRemaining.filterMoves(turnsTaken);
-			
-			if (properlyContains(onBoard.allOpenSquares(), movesRemaining.getStrat()))
-				return true;
-			else return false;
-		}
+		else return Bits.containsAllExcept(onBoard.openSquares(), mask, turnsTaken);
 	}
 
 	/* Removes any overlapping entries in the alreadyPlayed list from the strats list. */
@@ -61,42 +77,31 @@ public class Strategy {
 			if (strat.contains(alreadyPlayed.get(i)))
 				strat.removeFirstOccurrence(alreadyPlayed.get(i));
 		}
+		movesChanged();
 	}
 
-	/* Returns the next unplayed move in this strategy. */
+	/* Returns the next unplayed move in this strategy, i.e. the lowest-numbered open square in it. */
 	public int getNextMove(Board onBoard) {
 		if (size() == 0)
 			return -1;
-		else {
-			LinkedList<Integer> openSquares = onBoard.allOpenSquares();
-			for (int i = 0; i < openSquares.size(); i++) {
-				if (strat.contains(openSquares.get(i)))
-					return openSquares.get(i);
-			}
-			return -1;
-		}
+		else return Bits.firstCommon(mask, onBoard.openSquares());
 	}
 
 	/* Determines whether or not two strategies have any point of overlap/
 	 * moves in common: */
 	public boolean overlaps(Strategy another) {
-		for (int i = 0; i < another.size(); i++) {
-			if (strat.contains(another.getMoveAt(i)))
-				return true;
-		}
-		return false;
+		return Bits.intersects(mask, another.getMask());
 	}
 
-	/* Returns the overlap between two strategies, or -1 if no overlap exists: */
+	/* Returns the overlap between two strategies (the first one in the other strategy's
+	 * play order), or -1 if no overlap exists: */
 	public int getOverlap(Strategy another) {
-		if (!overlaps(another))
-			return -1;
-		else {
-			int index = 0;
-			while (!strat.contains(another.getMoveAt(index)))
-				index++;
-			return another.getMoveAt(index);
+		for (int i = 0; i < another.size(); i++) {
+			int move = another.getMoveAt(i);
+			if (Bits.contains(mask, move))
+				return move;
 		}
+		return -1;
 	}
 	
 	/* =====================================================================================================
@@ -104,9 +109,9 @@ public class Strategy {
 	 * ===================================================================================================== */
 	
 	public int getMoveAt(int turnNumber) {
-		if (IS_NULL_STRAT || turnNumber >= strat.size())
+		if (IS_NULL_STRAT || turnNumber >= order.length)
 			return -1;
-		else return strat.get(turnNumber);
+		else return order[turnNumber];
 	}
 	
 	/* =====================================================================================================
@@ -137,14 +142,7 @@ public class Strategy {
 
 		if (this.size() >= another.size())
 			return false;
-		
-		else {
-			for (int i = 0; i < this.size(); i++) {
-				if (!another.getStrat().contains(this.getMoveAt(i)))
-					return false;
-			}
-			return true;
-		}
+		else return Bits.containsAll(another.getMask(), mask);
 	}
 	
 	/* Equals method. Equality of two strategies is not effected by the order
@@ -153,20 +151,10 @@ public class Strategy {
 		if (another.isNullStrat())
 			return IS_NULL_STRAT;
 
-		LinkedList<Integer> otherStrat = another.getStrat();
-
-		if (otherStrat.size() != strat.size())
-			return false;
-
-		for (int i = 0; i < strat.size(); i++) {
-			if (!otherStrat.contains(strat.get(i)))
-				return false;
-		}
-
-		return true;
+		return !IS_NULL_STRAT && Bits.equal(mask, another.getMask());
 	}
 
-	/* Returns a full clone of this strategy: */
+	/* Returns a full clone of this strategy, including its wins and losses: */
 	public Strategy clone() {
 		LinkedList<Integer> strat2 = new LinkedList<Integer>();
 
@@ -176,20 +164,37 @@ public class Strategy {
 		}
 
 		Strategy clone = new Strategy(strat2, isDrawStrat);
+		clone.wins = wins;
+		clone.losses = losses;
 		return clone;
 	}
 
+	/* Adds the given numbers of wins and losses to this strategy's counts, e.g. when
+	 * merging in what another copy of it has learned. */
+	public void addCounts(int moreWins, int moreLosses) {
+		wins = wins + moreWins;
+		losses = losses + moreLosses;
+		scoreChanged(moreWins - moreLosses);
+	}
+
 	public LinkedList<Integer> getStrat() {
 		return strat;
 	}
+
+	/* Returns this strategy's moves as a mask. The array is shared, so do not modify it. */
+	public long[] getMask() {
+		return mask;
+	}
 	
 	public int getWins() {
 		return wins;
 	}
 
 	public void augmentWins() {
-		if (!isDrawStrat)
+		if (!isDrawStrat) {
 			wins = wins+1;
+			scoreChanged(1);
+		}
 	}
 	
 	public int getLosses() {
@@ -197,8 +202,16 @@ public class Strategy {
 	}
 
 	public void augmentLosses() {
-		if (!isDrawStrat)
+		if (!isDrawStrat) {
 			losses = losses+1;
+			scoreChanged(-1);
+		}
+	}
+
+	/* Lets the store holding this strategy move it to its new place in the ranking. */
+	private void scoreChanged(int delta) {
+		if (owner != null && delta != 0)
+			owner.rescored(this, delta);
 	}
 
 	public int getScore() {
@@ -206,7 +219,7 @@ public class Strategy {
 	}
 
 	public int size() {
-		return strat.size();
+		return order.length;
 	}
 	
 	public boolean properlyContains(LinkedList<Integer> possibleContainer, LinkedList<Integer> possiblyContained) {
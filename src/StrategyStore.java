@@ -0,0 +1,318 @@
+import java.util.*;
+
+/* The strategies a TicTacToe has learned. Strategies are looked up through a hash index keyed by
+ * their (order-independent) move set plus whether they are draw strategies, so adding a new one
+ * or counting another win for a known one costs the same however many are stored. They are also
+ * kept in a list in descending order of score for players to walk.
+ *
+ * The list is never re-sorted. Strategies with equal scores sit together in a block, and when a
+ * stored strategy's wins or losses change it tells its store (see Strategy.augmentWins), which
+ * moves it one block up or down by swapping it with the block's first or last member.
+ *
+ * A SubsetTrie per strategy type answers which stored strategies are pared-down or overgrown
+ * versions of one another, so prune() only touches the strategies affected by a new one.
+ *
+ * An inverted index gives, per square, the ranks of the strategies containing it as a bitset
+ * (see containing()), kept up to date as strategies move, so players can rule out every strategy
+ * through an opponent's square with one pass over a bitset. */
+public class StrategyStore implements RankedStrategies {
+	private HashMap<Key, Strategy> byMoves;
+	private ArrayList<Strategy> ranked;
+	private SubsetTrie winningSets;
+	private SubsetTrie drawSets;
+	private int scoreBase;
+	private int[] blockStart;
+	private int[] blockCount;
+	// ^ where each score's block starts in ranked, and how many it holds, indexed by score - scoreBase
+	private long[][] bySquare;
+	// ^ the inverted index: bit r of bySquare[square] is set if the strategy ranked r contains the square
+	private static final long[] NONE = new long[0];
+
+	public StrategyStore() {
+		byMoves = new HashMap<Key, Strategy>();
+		ranked = new ArrayList<Strategy>();
+		winningSets = new SubsetTrie();
+		drawSets = new SubsetTrie();
+		scoreBase = -8;
+		blockStart = new int[16];
+		blockCount = new int[16];
+		bySquare = new long[0][];
+	}
+
+	public int size() {
+		return ranked.size();
+	}
+
+	/* Returns the strategy at the given rank (0 being the best). */
+	public Strategy get(int rank) {
+		return ranked.get(rank);
+	}
+
+	/* Returns the best-scoring strategy, or null if there are none. */
+	public Strategy top() {
+		return ranked.isEmpty() ? null : ranked.get(0);
+	}
+
+	/* Returns the ranks of the strategies containing the given square, as a bitset (bit r of word
+	 * r/64 for rank r). The array is the store's own and changes with it, so do not modify or keep it. */
+	public long[] containing(int square) {
+		return square < bySquare.length && bySquare[square] != null ? bySquare[square] : NONE;
+	}
+
+	/* Returns the stored strategy with the same moves and type as the given one, or null. */
+	public Strategy find(Strategy like) {
+		return byMoves.get(new Key(like));
+	}
+
+	public boolean contains(Strategy like) {
+		return byMoves.containsKey(new Key(like));
+	}
+
+	/* Stores the given strategy if it is new, otherwise counts another win for the stored copy
+	 * (which does nothing for draw strategies). Returns the stored strategy either way. */
+	public Strategy addOrAugment(Strategy s) {
+		Strategy known = byMoves.putIfAbsent(new Key(s), s);
+		if (known == null) {
+			insert(s);
+			return s;
+		}
+		known.augmentWins();
+		return known;
+	}
+
+	/* Stores the given strategy, replacing any stored one with the same moves and type. */
+	public void add(Strategy s) {
+		Strategy replaced = byMoves.put(new Key(s), s);
+		if (replaced != null)
+			removeAt(replaced.rank);
+		insert(s);
+	}
+
+	/* Adds a strategy that ranks no higher than any stored one - e.g. when loading strategies saved
+	 * in ranked order - in constant time. Anything else is simply passed on to add(). */
+	void appendRanked(Strategy s) {
+		int score = s.getScore();
+		Key key = new Key(s);
+		if ((!ranked.isEmpty() && ranked.get(ranked.size()-1).getScore() < score) || byMoves.containsKey(key)) {
+			add(s);
+			return;
+		}
+		byMoves.put(key, s);
+		ensureScore(score);
+		int at = score - scoreBase;
+		if (blockCount[at]++ == 0)
+			blockStart[at] = ranked.size();
+		ranked.add(null);
+		place(s, ranked.size()-1);
+		s.owner = this;
+		setsFor(s).add(s);
+	}
+
+	/* Removes and returns the strategy at the given rank. The strategies ranked below it may be
+	 * reordered among those with equal scores, but none moves above the given rank. */
+	public Strategy remove(int rank) {
+		Strategy removed = ranked.get(rank);
+		byMoves.remove(new Key(removed));
+		removeAt(rank);
+		return removed;
+	}
+
+	public void clear() {
+		for (int i = 0; i < ranked.size(); i++)
+			ranked.get(i).owner = null;
+		byMoves.clear();
+		ranked.clear();
+		for (int square = 0; square < bySquare.length; square++) {
+			if (bySquare[square] != null)
+				Arrays.fill(bySquare[square], 0L);
+		}
+		winningSets.clear();
+		drawSets.clear();
+		Arrays.fill(blockCount, 0);
+	}
+
+	/* Checks to see if the store holds a shorter version of the given strategy, of the same type
+	 * (see Strategy.isParedVersionOf). */
+	public boolean containsParedVersion(Strategy s) {
+		return setsFor(s).containsProperSubsetOf(s);
+	}
+
+	/* Keeps the store free of longer/overgrown copies of any strategy after the given one has been
+	 * stored: either the new strategy is itself overgrown and is removed, or every stored overgrown
+	 * version of it is. Returns whether the given strategy is still stored. */
+	public boolean prune(Strategy s) {
+		if (s.owner != this)
+			return false;
+		if (containsParedVersion(s)) {
+			remove(s.rank);
+			return false;
+		}
+		LinkedList<Strategy> overgrown = new LinkedList<Strategy>();
+		setsFor(s).collectProperSupersetsOf(s, overgrown);
+		for (int i = 0; i < overgrown.size(); i++)
+			remove(overgrown.get(i).rank);
+		return true;
+	}
+
+	private SubsetTrie setsFor(Strategy s) {
+		return s.isDrawStrat() ? drawSets : winningSets;
+	}
+
+	/* Called by a stored strategy whose score has just changed by the given amount,
+	 * to move it to the block for its new score. */
+	void rescored(Strategy s, int delta) {
+		int score = s.getScore() - delta;
+		for (; delta > 0; delta--, score++) {
+			ensureScore(score+1);
+			int from = score - scoreBase;
+			int first = blockStart[from];
+			swap(s.rank, first);
+			blockStart[from]++;
+			blockCount[from]--;
+			if (blockCount[from+1]++ == 0)
+				blockStart[from+1] = first;
+		}
+		for (; delta < 0; delta++, score--) {
+			ensureScore(score-1);
+			int from = score - scoreBase;
+			int last = blockStart[from] + blockCount[from] - 1;
+			swap(s.rank, last);
+			blockCount[from]--;
+			blockCount[from-1]++;
+			blockStart[from-1] = last;
+		}
+	}
+
+	/* Puts a new strategy at the end of its score's block. Each lower-scoring block makes room by
+	 * moving its first member to just past its end, so the cost is the number of scores below. */
+	private void insert(Strategy s) {
+		int score = s.getScore();
+		ensureScore(score);
+		int free = ranked.size();
+		ranked.add(null);
+
+		for (int i = 0; i < score - scoreBase; i++) {
+			if (blockCount[i] > 0) {
+				place(ranked.get(blockStart[i]), free);
+				free = blockStart[i]++;
+			}
+		}
+
+		int at = score - scoreBase;
+		if (blockCount[at]++ == 0)
+			blockStart[at] = free;
+		place(s, free);
+		s.owner = this;
+		setsFor(s).add(s);
+	}
+
+	/* Takes the strategy at the given rank out of the list, closing the gap the same way insert() opens one. */
+	private void removeAt(int rank) {
+		Strategy s = ranked.get(rank);
+		int at = s.getScore() - scoreBase;
+		int free = blockStart[at] + blockCount[at] - 1;
+		place(ranked.get(free), rank);
+		blockCount[at]--;
+
+		for (int i = at-1; i >= 0; i--) {
+			if (blockCount[i] > 0) {
+				int last = blockStart[i] + blockCount[i] - 1;
+				place(ranked.get(last), free);
+				blockStart[i] = free;
+				free = last;
+			}
+		}
+
+		index(ranked.get(ranked.size()-1), ranked.size()-1, false);
+		// ^ whatever is left in the last slot has been placed elsewhere (or is s)
+		ranked.remove(ranked.size()-1);
+		s.owner = null;
+		setsFor(s).remove(s);
+	}
+
+	/* Puts a strategy at the given rank, indexing it there in place of the strategy it replaces
+	 * (which has been, or is about to be, placed somewhere else). */
+	private void place(Strategy s, int rank) {
+		Strategy previous = ranked.set(rank, s);
+		if (previous != s) {
+			if (previous != null)
+				index(previous, rank, false);
+			index(s, rank, true);
+		}
+		s.rank = rank;
+	}
+
+	/* Sets or clears the given rank's bit in the index entries for the strategy's squares. */
+	private void index(Strategy s, int rank, boolean present) {
+		int w = rank >>> 6;
+		long bit = 1L << rank;
+		for (int i = 0; i < s.size(); i++) {
+			int square = s.getMoveAt(i);
+			if (present) {
+				if (square >= bySquare.length)
+					bySquare = Arrays.copyOf(bySquare, Math.max(square+1, 2*bySquare.length));
+				if (bySquare[square] == null)
+					bySquare[square] = new long[Math.max(w+1, (ranked.size() + 63) >>> 6)];
+				else if (w >= bySquare[square].length)
+					bySquare[square] = Arrays.copyOf(bySquare[square], Math.max(w+1, 2*bySquare[square].length));
+				bySquare[square][w] |= bit;
+			}
+			else if (square < bySquare.length && bySquare[square] != null && w < bySquare[square].length)
+				bySquare[square][w] &= ~bit;
+		}
+	}
+
+	private void swap(int i, int j) {
+		Strategy a = ranked.get(i);
+		place(ranked.get(j), i);
+		place(a, j);
+	}
+
+	/* Grows the block tables so that they cover the given score. */
+	private void ensureScore(int score) {
+		if (score < scoreBase) {
+			int grow = Math.max(scoreBase - score, blockStart.length);
+			int[] start = new int[blockStart.length + grow];
+			int[] count = new int[blockCount.length + grow];
+			System.arraycopy(blockStart, 0, start, grow, blockStart.length);
+			System.arraycopy(blockCount, 0, count, grow, blockCount.length);
+			blockStart = start;
+			blockCount = count;
+			scoreBase -= grow;
+		}
+		else if (score - scoreBase >= blockStart.length) {
+			int size = Math.max(score - scoreBase + 1, 2*blockStart.length);
+			blockStart = Arrays.copyOf(blockStart, size);
+			blockCount = Arrays.copyOf(blockCount, size);
+		}
+	}
+
+	/* Returns the strategies in ranked order as a new list (the strategies themselves are not copied). */
+	public LinkedList<Strategy> toList() {
+		return new LinkedList<Strategy>(ranked);
+	}
+
+	/* Identifies a strategy by its move set and type; shares the strategy's mask rather than copying it. */
+	private static final class Key {
+		private final long[] mask;
+		private final boolean isDrawStrat;
+		private final int hash;
+
+		Key(Strategy s) {
+			mask = s.getMask();
+			isDrawStrat = s.isDrawStrat();
+			hash = 31*Bits.hash(mask) + (isDrawStrat ? 1 : 0);
+		}
+
+		public int hashCode() {
+			return hash;
+		}
+
+		public boolean equals(Object other) {
+			if (!(other instanceof Key))
+				return false;
+			Key another = (Key) other;
+			return hash == another.hash && isDrawStrat == another.isDrawStrat && Bits.equal(mask, another.mask);
+		}
+	}
+}
\ No newline at end of file
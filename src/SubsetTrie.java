@@ -0,0 +1,115 @@
+import java.util.*;
+
+/* A trie over strategies' move sets, each set spelled out in ascending square order. Because
+ * every path is sorted, "is any stored set a proper subset of S?" only ever follows edges
+ * labelled with squares of S, and "which stored sets are proper supersets of S?" only visits
+ * branches whose squares so far are consistent with S - neither walks the whole store.
+ * StrategyStore keeps one trie per strategy type (winning or draw). */
+final class SubsetTrie {
+	private Node root = new Node();
+
+	void add(Strategy s) {
+		int[] squares = Bits.squares(s.getMask());
+		Node node = root;
+		for (int i = 0; i < squares.length; i++)
+			node = node.childFor(squares[i]);
+		node.strat = s;
+	}
+
+	void remove(Strategy s) {
+		remove(root, Bits.squares(s.getMask()), 0);
+	}
+
+	/* Returns true if the node at the end of the path is now unused and can be dropped. */
+	private boolean remove(Node node, int[] squares, int from) {
+		if (from == squares.length)
+			node.strat = null;
+		else {
+			int at = node.indexOf(squares[from]);
+			if (at < 0)
+				return false;
+			if (remove(node.children[at], squares, from+1))
+				node.removeChild(at);
+		}
+		return node.strat == null && node.childCount == 0;
+	}
+
+	/* Is some stored strategy a proper subset of the given one? */
+	boolean containsProperSubsetOf(Strategy s) {
+		int[] squares = Bits.squares(s.getMask());
+		return containsSubset(root, squares, 0, 0);
+	}
+
+	/* depth is the size of the set spelled out by the path to node. */
+	private boolean containsSubset(Node node, int[] squares, int from, int depth) {
+		if (node.strat != null && depth < squares.length)
+			return true;
+		for (int i = from; i < squares.length; i++) {
+			int at = node.indexOf(squares[i]);
+			if (at >= 0 && containsSubset(node.children[at], squares, i+1, depth+1))
+				return true;
+		}
+		return false;
+	}
+
+	/* Adds every stored strategy that is a proper superset of the given one to found. */
+	void collectProperSupersetsOf(Strategy s, List<Strategy> found) {
+		int[] squares = Bits.squares(s.getMask());
+		collectSupersets(root, squares, 0, 0, found);
+	}
+
+	private void collectSupersets(Node node, int[] squares, int matched, int extra, List<Strategy> found) {
+		if (matched == squares.length && extra > 0 && node.strat != null)
+			found.add(node.strat);
+		for (int i = 0; i < node.childCount; i++) {
+			int square = node.keys[i];
+			if (matched < squares.length && square > squares[matched])
+				break; // every later child skips past a square we need
+			if (matched < squares.length && square == squares[matched])
+				collectSupersets(node.children[i], squares, matched+1, extra, found);
+			else
+				collectSupersets(node.children[i], squares, matched, extra+1, found);
+		}
+	}
+
+	void clear() {
+		root = new Node();
+	}
+
+	private static final class Node {
+		private Strategy strat;
+		private int[] keys = new int[0];
+		private Node[] children = new Node[0];
+		private int childCount;
+		// ^ children sorted by the square labelling the edge to them
+
+		private int indexOf(int square) {
+			int at = Arrays.binarySearch(keys, 0, childCount, square);
+			return at >= 0 ? at : -1;
+		}
+
+		private Node childFor(int square) {
+			int at = Arrays.binarySearch(keys, 0, childCount, square);
+			if (at >= 0)
+				return children[at];
+			at = -at - 1;
+			if (childCount == keys.length) {
+				keys = Arrays.copyOf(keys, Math.max(2, 2*childCount));
+				children = Arrays.copyOf(children, keys.length);
+			}
+			System.arraycopy(keys, at, keys, at+1, childCount-at);
+			System.arraycopy(children, at, children, at+1, childCount-at);
+			keys[at] = square;
+			children[at] = new Node();
+			childCount++;
+			return children[at];
+		}
+
+		private void removeChild(int at) {
+			System.arraycopy(keys, at+1, keys, at, childCount-at-1);
+			System.arraycopy(children, at+1, children, at, childCount-at-1);
+			childCount--;
+			children[childCount] = null;
+		}
+	}
+}
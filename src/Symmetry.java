@@ -0,0 +1,137 @@
+import java.util.concurrent.*;
+
+/* The 8 rotations and reflections of an N x N board, as precomputed square permutations. Any
+ * of them maps lines onto lines, so positions that are images of each other are worth exactly
+ * the same; canonicalizing them to the smallest image lets what is searched or learned about one
+ * be reused for all of them (see TranspositionTable and TdValueTable). Symmetry 0 is the
+ * identity. Shared per board size, like BoardGeometry, so instances must never be modified.
+ *
+ * Learned strategies (StrategyStore) are deliberately not canonicalized. A strategy's record
+ * mixes the games of both sides, and which side a set of squares wins for depends on who moved
+ * first, which no symmetry preserves: folding a strategy's images into one entry charges the
+ * second mover's losses against the first mover's wins, and self-play converges markedly less
+ * often. */
+public final class Symmetry {
+	public static final int COUNT = 8;
+	private static final ConcurrentHashMap<Integer, Symmetry> CACHE = new ConcurrentHashMap<Integer, Symmetry>();
+
+	private final int size;
+	private final int squares;
+	private final int[][] image;
+	// ^ image[sym][square] is where the square ends up under that symmetry
+	private final int[] inverse;
+	private final int[][][] chunkImage;
+	// ^ for boards of at most 32 squares: chunkImage[sym][byteIndex][byte] is the mask that
+	//   those 8 bits of a mask map to, so a whole mask is mapped with a few lookups
+
+	private Symmetry(int size) {
+		this.size = size;
+		squares = size*size;
+		image = new int[COUNT][squares+1];
+		for (int square = 1; square <= squares; square++) {
+			int row = (square-1) / size;
+			int col = (square-1) % size;
+			int last = size-1;
+			int[][] cells = {{row, col}, {col, last-row}, {last-row, last-col}, {last-col, row},
+					{row, last-col}, {last-row, col}, {col, row}, {last-col, last-row}};
+			// ^ identity, the three rotations, then the four reflections
+			for (int sym = 0; sym < COUNT; sym++)
+				image[sym][square] = cells[sym][0]*size + cells[sym][1] + 1;
+		}
+
+		inverse = new int[COUNT];
+		for (int sym = 0; sym < COUNT; sym++) {
+			for (int other = COUNT-1; other >= 0; other--) {
+				int square = 1;
+				while (square <= squares && image[other][image[sym][square]] == square)
+					square++;
+				if (square > squares)
+					inverse[sym] = other;
+			}
+		}
+
+		if (squares <= 32) {
+			int chunks = (squares + 7) >>> 3;
+			chunkImage = new int[COUNT][chunks][256];
+			for (int sym = 0; sym < COUNT; sym++)
+				for (int chunk = 0; chunk < chunks; chunk++)
+					for (int bits = 1; bits < 256; bits++) {
+						int mapped = 0;
+						for (int b = 0; b < 8; b++) {
+							int square = chunk*8 + b + 1;
+							if ((bits & (1 << b)) != 0 && square <= squares)
+								mapped |= 1 << (image[sym][square]-1);
+						}
+						chunkImage[sym][chunk][bits] = mapped;
+					}
+		}
+		else chunkImage = null;
+	}
+
+	/* Returns the shared symmetry tables for size x size boards. */
+	public static Symmetry of(int size) {
+		Symmetry symmetry = CACHE.get(size);
+		if (symmetry == null)
+			symmetry = CACHE.computeIfAbsent(size, k -> new Symmetry(size));
+		return symmetry;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/* Returns where the given square ends up under the given symmetry. */
+	public int map(int sym, int square) {
+		return image[sym][square];
+	}
+
+	/* Returns the symmetry that undoes the given one. */
+	public int inverse(int sym) {
+		return inverse[sym];
+	}
+
+	/* Maps a mask of at most 32 squares (see Board.packedMarks) under the given symmetry. */
+	public int mapMask(int sym, int mask) {
+		int[][] tables = chunkImage[sym];
+		int mapped = 0;
+		for (int chunk = 0; mask != 0; chunk++, mask >>>= 8)
+			mapped |= tables[chunk][mask & 0xFF];
+		return mapped;
+	}
+
+	public boolean hasPackedKeys() {
+		return chunkImage != null;
+	}
+
+	/* Packs a position of at most 32 squares into one long: X's squares in the low half, O's in the high half.
+	 * (Searches pass the mover's squares first instead, so that the key also says whose turn it is.) */
+	public static long packedKey(int xMask, int oMask) {
+		return (xMask & 0xFFFFFFFFL) | ((long) oMask << 32);
+	}
+
+	/* Returns the symmetry that takes the given position (at most 32 squares) to its canonical
+	 * form, the image with the smallest packed key. */
+	public int canonicalSymmetry(int xMask, int oMask) {
+		int best = 0;
+		long bestKey = packedKey(xMask, oMask);
+		for (int sym = 1; sym < COUNT; sym++) {
+			long key = packedKey(mapMask(sym, xMask), mapMask(sym, oMask));
+			if (Long.compareUnsigned(key, bestKey) < 0) {
+				best = sym;
+				bestKey = key;
+			}
+		}
+		return best;
+	}
+
+	/* Returns the packed key of the canonical form of the given position (at most 32 squares). */
+	public long canonicalKey(int xMask, int oMask) {
+		int sym = canonicalSymmetry(xMask, oMask);
+		return packedKey(mapMask(sym, xMask), mapMask(sym, oMask));
+	}
+
+	/* Returns the canonical key of the board's current position. Requires hasPackedKeys(). */
+	public long canonicalKey(Board board) {
+		return canonicalKey(board.packedMarks(Board.X), board.packedMarks(Board.O));
+	}
+}
\ No newline at end of file
@@ -0,0 +1,95 @@
+import java.util.*;
+
+/* The value table behind learner players: for every position, an estimate of how good it is for
+ * the side that has just moved into it (1 a certain win, 1/2 a draw, 0 a loss), learned by TD(0)
+ * from the games they play. A learner plays the move leading to the best-valued position, or now
+ * and then (epsilon of the time) a random one to keep exploring, and after each of its moves
+ * pulls the value of the position it had moved into before towards that of the one it moved into
+ * now; at the end of the game the last one is pulled towards the result.
+ *
+ * The table is one float per ternary index (see Board.ternaryIndex) from the mover's point of
+ * view, so both sides of a self-play game share it and there are no per-position objects: 3^9
+ * floats, 77 KB, for 3 x 3. Positions are looked up by their canonical index (see index()), so
+ * what is learned about one position is learned for all its rotations and reflections at once.
+ * Only for boards of at most BoardGeometry.MAX_TERNARY_SQUARES squares. */
+public class TdValueTable {
+	public static final float UNKNOWN = 0.5f;
+	// ^ what every position is worth before anything is learned about it
+
+	private final BoardGeometry geometry;
+	private final Symmetry symmetry;
+	private final float[] values;
+	private float learningRate = 0.1f;
+	private double epsilon = 0.1;
+
+	public TdValueTable(BoardGeometry geometry) {
+		if (!geometry.hasTernaryIndex())
+			throw new IllegalArgumentException("Learner players only support boards of at most "
+					+ BoardGeometry.MAX_TERNARY_SQUARES + " squares");
+		this.geometry = geometry;
+		symmetry = Symmetry.of(geometry.size());
+		values = new float[geometry.ternaryIndexCount()];
+		Arrays.fill(values, UNKNOWN);
+	}
+
+	/* Returns the index the board's position is valued under, from the given side's point of view:
+	 * the smallest ternary index among the position's 8 images, the same for each of them. */
+	public int index(Board onBoard, int side) {
+		int mine = onBoard.packedMarks(side);
+		int theirs = onBoard.packedMarks(1-side);
+		int best = geometry.ternaryIndex(mine, theirs);
+		for (int sym = 1; sym < Symmetry.COUNT; sym++)
+			best = Math.min(best, geometry.ternaryIndex(symmetry.mapMask(sym, mine), symmetry.mapMask(sym, theirs)));
+		return best;
+	}
+
+	public float value(int index) {
+		return values[index];
+	}
+
+	/* Moves the given position's value a step (the learning rate) towards the given target. */
+	public void update(int index, float target) {
+		values[index] += learningRate * (target - values[index]);
+	}
+
+	/* Returns the square the given side should play: usually the one leading to the best position
+	 * for it, but with probability epsilon a random open one. The board is left as it was. */
+	public int chooseMove(Board onBoard, int side, SplittableRandom random) {
+		if (epsilon > 0 && random.nextDouble() < epsilon)
+			return Bits.nth(onBoard.openSquares(), random.nextInt(onBoard.openCount()));
+
+		int bestMove = -1;
+		float bestValue = -1;
+		long[] open = onBoard.openSquares();
+		for (int w = 0; w < open.length; w++) {
+			for (long remaining = open[w]; remaining != 0; remaining &= remaining-1) {
+				int square = (w << 6) + Long.numberOfTrailingZeros(remaining) + 1;
+				onBoard.play(square, side);
+				float value = onBoard.gameWon() ? 1 : onBoard.openCount() == 0 ? 0.5f : values[index(onBoard, side)];
+				onBoard.undo();
+				if (value > bestValue) {
+					bestValue = value;
+					bestMove = square;
+				}
+			}
+		}
+		return bestMove;
+	}
+
+	public float learningRate() {
+		return learningRate;
+	}
+
+	public void setLearningRate(float learningRate) {
+		this.learningRate = learningRate;
+	}
+
+	public double epsilon() {
+		return epsilon;
+	}
+
+	/* Sets how often learners play a random move instead of the best one; 0 for pure exploitation. */
+	public void setEpsilon(double epsilon) {
+		this.epsilon = epsilon;
+	}
+}
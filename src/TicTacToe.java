@@ -1,100 +1,291 @@
+import java.io.*;
+import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 public class TicTacToe {
 	private LinkedList<Player> players;
-	private LinkedList<Game> pastGames;
-	private LinkedList<Strategy> allWinningStrats;
+	private GameHistory history;
+	// ^ null unless enableHistory() was called
+	private StrategyStore allWinningStrats;
+	private TdValueTable valueTable;
+	// ^ for learner players, created when the first one is
+	private SharedKnowledge shared;
+	// ^ if set, games are played against its snapshots and learned from by its learner, not allWinningStrats
 	private LinkedList<Strategy> allLosingStrats;
+	private LinkedList<GameListener> listeners;
+	private GameListener consoleListener;
+	// ^ attached while a human plays at the console
+	private int boardSize;
+	private int winLength;
+	private SplittableRandom random;
+	// ^ every random choice in this context's games comes from here (see setSeed)
+	private MctsSearch.Budget mctsBudget;
+	// ^ what this context's mcts players search with (see configureMcts)
 	private static int testSize = 20;
 
 	public TicTacToe(String playerType1, String playerType2) {
-		allWinningStrats = new LinkedList<Strategy>();
+		this(playerType1, playerType2, 3, 3);
+	}
+
+	/* Sets up games on a boardSize x boardSize board that are won by getting winLength in a row,
+	 * e.g. (4, 4) or (15, 5) for five-in-a-row. */
+	public TicTacToe(String playerType1, String playerType2, int boardSize, int winLength) {
+		this(playerType1, playerType2, boardSize, winLength, MctsSearch.Budget.DEFAULT);
+	}
+
+	/* As above, with any mcts players searching on the given budget rather than the default one. */
+	public TicTacToe(String playerType1, String playerType2, int boardSize, int winLength, MctsSearch.Budget mctsBudget) {
+		BoardGeometry.of(boardSize, winLength); // fails fast on a bad configuration
+		this.boardSize = boardSize;
+		this.winLength = winLength;
+		this.mctsBudget = mctsBudget;
+		random = new SplittableRandom();
+		allWinningStrats = new StrategyStore();
 		players = new LinkedList<Player>();
-		pastGames = new LinkedList<Game>();
 		Player one = new Player("X", playerType1, this);
 		Player two = new Player("O", playerType2, this);
 
 		players.add(one);
 		players.add(two);
+
+		// a human needs to see the board; computer-only games stay silent unless someone listens in:
+		listeners = new LinkedList<GameListener>();
+		if (playerType1.equalsIgnoreCase("human") || playerType2.equalsIgnoreCase("human")) {
+			consoleListener = new ConsoleGameListener();
+			listeners.add(consoleListener);
+		}
 	}
 	
-	public void playGame() {
-		Game g = new Game(players);
+	/* Sets up games that read and learn into the given shared knowledge base instead of keeping their
+	 * own, so that any number of them can be played at once on different threads. */
+	public TicTacToe(String playerType1, String playerType2, SharedKnowledge shared) {
+		this(playerType1, playerType2, shared.boardSize(), shared.winLength());
+		this.shared = shared;
+		// (computer players pick up the shared snapshots when they are reset for each game)
+	}
+
+	/* Plays one game, learns from it, and returns it. */
+	public Game playGame() {
+		Game g = new Game(players, boardSize, winLength);
+		for (int i = 0; i < listeners.size(); i++)
+			g.addListener(listeners.get(i));
 		g.playRound();
-		pastGames.add(g);
-		if (g.wasDraw()) {
-			Strategy draw1 = new Strategy(g.getDrawTurns1(), true);
-			Strategy draw2 = new Strategy(g.getDrawTurns2(), true);
-			addOrAugment(draw1, draw2);
+		if (history != null) {
+			try {
+				history.record(g.getBoard());
+			} catch (IOException ex) {
+				throw new UncheckedIOException("Could not spill the game history", ex);
+			}
 		}
+		if (shared != null) {
+			if (g.wasDraw())
+				shared.submitDraw(g.getDrawTurns1(), g.getDrawTurns2());
+			else shared.submitWin(g.getWinningMoves(), g.getLosingStrat());
+			return g;
+		}
+		if (g.wasDraw())
+			learnDraw(g.getDrawTurns1(), g.getDrawTurns2());
 		else {
-			Strategy nextWinner = new Strategy(g.getWinningMoves(), false);
-			addOrAugment(nextWinner);
+			if (g.getLosingStrat() != null)
+				g.getLosingStrat().augmentLosses();
+			learnWin(g.getWinningMoves());
 		}
-		allWinningStrats = reorganizeStrats(allWinningStrats);
+		return g;
+	}
+
+	/* Learns from a won game: the winner's moves become (or strengthen) a winning strategy. The
+	 * lists are kept by the new strategy, so pass copies. This does not charge the loss to the
+	 * strategy the loser was attempting: callers do that first, with Game.getLosingStrat(), as
+	 * playGame does. */
+	public void learnWin(LinkedList<Integer> winningMoves) {
+		Strategy nextWinner = new Strategy(winningMoves, false);
+		addOrAugment(nextWinner);
+		reorganizeStrats(nextWinner);
+	}
+
+	/* Learns from a drawn game: both sides' moves become draw strategies. As above, the lists are kept. */
+	public void learnDraw(LinkedList<Integer> turns1, LinkedList<Integer> turns2) {
+		Strategy draw1 = new Strategy(turns1, true);
+		Strategy draw2 = new Strategy(turns2, true);
+		addOrAugment(draw1, draw2);
+		reorganizeStrats(draw1, draw2);
 	}
 
 	/* Adds only unique/newly-discovered winning strategies to allWinningStrats, whereas
 	 * if a strategy is already contained, it augments that strategy's "wins" instance variable
 	 * (note that if the strategy is a draw strategy, the call to augmentWins() does nothing). */
 	public void addOrAugment(Strategy ... strats) {
-		for (int i = 0; i < strats.length; i++) {
-			if (!contains(allWinningStrats, strats[i]))
-				allWinningStrats.add(strats[i]);
-			else {
-				int index = findIndex(allWinningStrats, strats[i]);
-				allWinningStrats.get(index).augmentWins();
+		for (int i = 0; i < strats.length; i++)
+			allWinningStrats.addOrAugment(strats[i]);
+	}
+
+	/* Folds strategies learned elsewhere (e.g. by a parallel training worker) into allWinningStrats.
+	 * Like addOrAugment, a strategy that is already known is not added again; instead the
+	 * wins and losses of the incoming copy are added to the known one's. */
+	public void mergeStrats(List<Strategy> learned) {
+		ArrayList<Strategy> added = new ArrayList<Strategy>();
+
+		for (Strategy incoming : learned) {
+			Strategy known = allWinningStrats.find(incoming);
+			if (known == null) {
+				known = incoming.clone();
+				allWinningStrats.add(known);
+				added.add(known);
 			}
+			else
+				known.addCounts(incoming.getWins(), incoming.getLosses());
 		}
+		reorganizeStrats(added.toArray(new Strategy[added.size()]));
 	}
 
-	/* Prunes a list of strategies so that it does not contain longer/overgrown copies
-	 * (i.e. does not contain both [1 5 3 7] and [3 5 7])
-	 * of any strategy and calls a helper to store them in order of their overall wins-losses score. */
-	private LinkedList<Strategy> reorganizeStrats(LinkedList<Strategy> strats) {
-		int index = 0;
+	/* Replaces everything learned so far with the given strategies (which are used as-is, not copied). */
+	public void setWinningStrats(List<Strategy> strats) {
+		allWinningStrats.clear();
+		for (Strategy s : strats)
+			allWinningStrats.add(s);
+		reorganizeStrats(strats.toArray(new Strategy[strats.size()]));
+	}
 
-		while (index < strats.size()) {
-			if (containsParedVersion(strats, strats.get(index)))
-				strats.remove(index);
-			else
-				index++;
+	/* Prunes the store so that it does not contain longer/overgrown copies
+	 * (i.e. does not contain both [1 5 3 7] and [3 5 7]) of any strategy. Since the store was
+	 * already pruned, only the given newly-stored strategies can have introduced any; strategies
+	 * that were already known (and so were not stored again) are skipped. The store itself
+	 * keeps them in order of their overall wins-losses score as their counts change. */
+	private void reorganizeStrats(Strategy ... stored) {
+		if (!Metrics.ENABLED) {
+			pruneStrats(stored);
+			return;
 		}
-		strats = rankByScore(strats);
-		return strats;
+
+		Metrics.ReorganizeEvent event = new Metrics.ReorganizeEvent();
+		event.begin();
+		long start = System.nanoTime();
+		pruneStrats(stored);
+		Metrics.reorganized(event, start, stored.length, allWinningStrats.size());
 	}
 
-	/* Sorts a list of strategies into descending order by their overall wins-losses scores. */
-	private LinkedList<Strategy> rankByScore(LinkedList<Strategy> list) {
-		if ((list.size() == 1) || (list.size() == 0))
-			return list;
-		else {
-			int pivot = list.get(0).getScore();
-			LinkedList<Strategy> smaller = new LinkedList<Strategy>();
-			LinkedList<Strategy> larger = new LinkedList<Strategy>();
-
-			for (int i = 1; i < list.size(); i++) {
-				if (list.get(i).getScore() >= pivot)
-					larger.add(list.get(i));
-				else smaller.add(list.get(i));
-			}
+	private void pruneStrats(Strategy[] stored) {
+		for (int i = 0; i < stored.length; i++)
+			allWinningStrats.prune(stored[i]);
+	}
+
+	/* Writes everything learned so far to the given file (see KnowledgeFile). */
+	public void saveKnowledge(Path file) throws IOException {
+		KnowledgeFile.save(allWinningStrats, boardSize, winLength, file);
+	}
+
+	/* Snapshots everything learned so far and writes it to the given file in the background,
+	 * so games can carry on being played while it is written. */
+	public Future<Path> saveKnowledgeAsync(Path file) {
+		return KnowledgeFile.saveAsync(allWinningStrats, boardSize, winLength, file);
+	}
+
+	/* Replaces everything learned so far with the strategies saved in the given file, e.g. to warm-start
+	 * a new run. The file must have been saved for the same board size and win length. */
+	public void loadKnowledge(Path file) throws IOException {
+		KnowledgeFile.load(file, allWinningStrats, boardSize, winLength);
+	}
+
+	/* Returns the most recent games played (see GameHistory), or null if enableHistory() has not been called. */
+	public GameHistory history() {
+		return history;
+	}
+
+	/* Starts recording the games played from now on, keeping the most recent capacity of them in
+	 * memory (8 bytes each). Nothing is recorded unless this is called, so contexts that never look
+	 * at their history pay nothing for it. Only for boards of at most GameHistory.MAX_SQUARES squares. */
+	public GameHistory enableHistory(int capacity) {
+		if (history != null)
+			throw new IllegalStateException("This context already records its games");
+		history = new GameHistory(capacity, boardSize, winLength);
+		return history;
+	}
 
-			smaller = rankByScore(smaller);
-			larger = rankByScore(larger);
+	/* As above, also appending every game to the given log file (see GameHistory.spillTo), so
+	 * that a small in-memory history can go with a complete record on disk. */
+	public GameHistory enableHistory(int capacity, Path spill) throws IOException {
+		GameHistory enabled = enableHistory(capacity);
+		try {
+			enabled.spillTo(spill);
+		} catch (IOException ex) {
+			history = null;
+			throw ex;
+		}
+		return enabled;
+	}
 
-			larger.add(list.get(0));
-			larger.addAll(smaller);
-			return larger;
+	/* Makes any human players take their moves from the given source instead of the console; the
+	 * console then no longer shows the games (attach a listener to follow them some other way). */
+	public void setHumanMoveSource(MoveSource source) {
+		for (int i = 0; i < players.size(); i++) {
+			if (players.get(i).playerType().equalsIgnoreCase("human"))
+				players.get(i).setMoveSource(source);
+		}
+		if (consoleListener != null && source != ConsoleMoveSource.INSTANCE) {
+			listeners.remove(consoleListener);
+			consoleListener = null;
 		}
 	}
 
-	public LinkedList<Strategy> winningStrats() {
+	/* Attaches a listener to every game played from now on. */
+	public void addGameListener(GameListener listener) {
+		listeners.add(listener);
+	}
+
+	public void removeGameListener(GameListener listener) {
+		listeners.remove(listener);
+	}
+
+	public StrategyStore winningStrats() {
 		return allWinningStrats;
 	}
 
-	/* Returns a true copy of allWinningStrats. */
-	public LinkedList<Strategy> winningStratsCopy() {
-		LinkedList<Strategy> toReturn = new LinkedList<Strategy>();
+	/* Returns what computer players should play from: the shared knowledge base's newest snapshot
+	 * if there is one, or else this context's own strategies. */
+	public RankedStrategies knowledge() {
+		return shared != null ? shared.current() : allWinningStrats;
+	}
+
+	/* Returns the value table this context's learner players share, creating it if need be. */
+	public TdValueTable valueTable() {
+		if (valueTable == null)
+			valueTable = new TdValueTable(BoardGeometry.of(boardSize, winLength));
+		return valueTable;
+	}
+
+	/* Makes this context's learner players use the given value table, e.g. one trained elsewhere. */
+	public void setValueTable(TdValueTable table) {
+		valueTable = table;
+		for (int i = 0; i < players.size(); i++)
+			players.get(i).setValueTable(table);
+	}
+
+	public SharedKnowledge sharedKnowledge() {
+		return shared;
+	}
+
+	/* Returns the random source this context's players draw from. It is not thread-safe: like the
+	 * rest of a TicTacToe it belongs to whichever thread is playing its games. */
+	public SplittableRandom random() {
+		return random;
+	}
+
+	/* Makes the games played from now on reproducible: the same seed and the same moves from any
+	 * human players give the same games. */
+	public void setSeed(long seed) {
+		random = new SplittableRandom(seed);
+	}
+
+	/* Makes this context draw from the given random source, e.g. one split from a master seed so
+	 * that contexts on different threads are independent but still reproducible. */
+	public void setRandom(SplittableRandom random) {
+		this.random = random;
+	}
+
+	/* Returns a true copy of allWinningStrats, best first. */
+	public List<Strategy> winningStratsCopy() {
+		ArrayList<Strategy> toReturn = new ArrayList<Strategy>(allWinningStrats.size());
 
 		for (int i = 0; i < allWinningStrats.size(); i++)
 			toReturn.add(allWinningStrats.get(i).clone());
@@ -102,41 +293,39 @@ public class TicTacToe {
 		return toReturn;
 	}
 
+	/* Sets the per-move budget of any mcts players in this context (and no other). */
+	public void configureMcts(MctsSearch.Budget budget) {
+		mctsBudget = budget;
+		for (int i = 0; i < players.size(); i++) {
+			if (players.get(i).getMcts() != null)
+				players.get(i).getMcts().setBudget(budget);
+		}
+	}
+
+	MctsSearch.Budget mctsBudget() {
+		return mctsBudget;
+	}
+
 	public LinkedList<Player> getPlayers() {
 		return players;
 	}
 
-	/* Checks to see if a list of strategies contains a shorter version of a given strategy s.
-	 * Note: In the Strategy method isParedVersion, there's a check in place to distinguish between
-	 * draw and non-draw strategies. Note that someone may cause a draw by playing [5 1 3 8] and win by
-	 * playing [5 1 3 8 2].  We shouldn't remove the winning strategy [5 1 3 8 2] as an "overgrown" version
-	 * of [5 1 3 8], since it's a distinct strategy in its own right. */
-	private boolean containsParedVersion(LinkedList<Strategy> list, Strategy s) {
-		for (int i = 0; i < list.size(); i++) {
-			if (s.isParedVersionOf(list.get(i)))
-				return true;
-		}
-		return false;
+	public int boardSize() {
+		return boardSize;
 	}
-	
-	/* =============
-	 * Helpers
-	 * ============= */
 
-	/* Alternate findIndex and contains methods to ensure usage of Strategy's equals method
-	 * (and to recognize [2, 1, 3] and [1, 2, 3] as the same strategy, for instance): */
-	private int findIndex(LinkedList<Strategy> list, Strategy s) {
-		for (int i = 0; i < list.size(); i++)
-			if (list.get(i).equals(s)) return i;
-		return -1;
+	public int winLength() {
+		return winLength;
 	}
 
-	private boolean contains(LinkedList<Strategy> list, Strategy s) {
-		for (int i = 0; i < list.size(); i++)
-			if (list.get(i).equals(s)) return true;
-		return false;
+	/* Note: the store's containsParedVersion distinguishes between draw and non-draw strategies,
+	 * as Strategy.isParedVersionOf does. Someone may cause a draw by playing [5 1 3 8] and win by
+	 * playing [5 1 3 8 2].  We shouldn't remove the winning strategy [5 1 3 8 2] as an "overgrown" version
+	 * of [5 1 3 8], since it's a distinct strategy in its own right. */
+	public boolean containsParedVersion(Strategy s) {
+		return allWinningStrats.containsParedVersion(s);
 	}
-
+	
 	public static void main(String[] args) {
 	}
 }
@@ -0,0 +1,93 @@
+/* A fixed-size table of search results keyed by the canonical form of a position (see Symmetry),
+ * so a result worked out for one position also answers for its 7 rotations and reflections.
+ * Keys and entries live in two flat arrays with no per-entry objects; a colliding store simply
+ * replaces the older entry. Moves are stored in the canonical position's frame, so callers map
+ * them with the symmetry that canonicalized the position (and its inverse to map them back).
+ * Only for boards of at most 32 squares, whose positions pack exactly into a long.
+ *
+ * One table can be shared by searches on different threads without locking: each slot's key is
+ * stored XORed with its entry, so a slot caught half-written by another thread (key from one
+ * store, entry from another) fails the key check and reads as empty instead of as a wrong result.
+ * Only size() is approximate then. */
+public class TranspositionTable {
+	public static final int EXACT = 0;
+	public static final int LOWER_BOUND = 1;
+	public static final int UPPER_BOUND = 2;
+	public static final int NONE = -1;
+	// ^ what probe() returns for a position that is not in the table
+
+	private static final long EMPTY = -1L;
+	// ^ no position has every square taken by both players, so this is never a real key
+
+	private final Symmetry symmetry;
+	private final long[] keys;
+	private final int[] entries;
+	// ^ score in the low 16 bits, bound flag in the next 2, move in the next 10
+	private final int shift;
+	private int stored;
+
+	/* Creates a table for size x size boards holding up to capacity entries (rounded up to a power of 2). */
+	public TranspositionTable(int boardSize, int capacity) {
+		if (boardSize*boardSize > 32)
+			throw new IllegalArgumentException("Transposition tables only support boards of at most 32 squares, not "
+					+ boardSize + " x " + boardSize);
+		symmetry = Symmetry.of(boardSize);
+		int slots = Integer.highestOneBit(Math.max(2, capacity - 1) << 1);
+		keys = new long[slots];
+		entries = new int[slots];
+		shift = 64 - Integer.numberOfTrailingZeros(slots);
+		clear();
+	}
+
+	public Symmetry symmetry() {
+		return symmetry;
+	}
+
+	/* Returns the entry stored for the given canonical key, or NONE. */
+	public int probe(long key) {
+		int slot = slot(key);
+		int entry = entries[slot];
+		return (keys[slot] ^ (entry & 0xFFFFFFFFL)) == key ? entry : NONE;
+	}
+
+	/* Stores a result for the given canonical key; the move must be in the canonical frame (0 for none). */
+	public void store(long key, int score, int flag, int move) {
+		int slot = slot(key);
+		if (keys[slot] == EMPTY)
+			stored++;
+		int entry = (score & 0xFFFF) | (flag << 16) | (move << 18);
+		entries[slot] = entry;
+		keys[slot] = key ^ (entry & 0xFFFFFFFFL);
+	}
+
+	public static int score(int entry) {
+		return (short) entry;
+	}
+
+	public static int flag(int entry) {
+		return (entry >>> 16) & 3;
+	}
+
+	public static int move(int entry) {
+		return (entry >>> 18) & 0x3FF;
+	}
+
+	public void clear() {
+		java.util.Arrays.fill(keys, EMPTY);
+		java.util.Arrays.fill(entries, 0);
+		stored = 0;
+	}
+
+	/* Returns how many slots are in use. */
+	public int size() {
+		return stored;
+	}
+
+	public int capacity() {
+		return keys.length;
+	}
+
+	private int slot(long key) {
+		return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+	}
+}